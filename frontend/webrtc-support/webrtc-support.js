@@ -15,8 +15,14 @@ class WebRTCSupport extends LitElement {
     stream = null;
     selfVideo = null;
     remoteVideos = {};
+    remoteStreams = {};
     started = false;
     selfId = null;
+    relayId = null; // Set when all streams go through a media relay
+    simulcastLayers = []; // One encoding per StreamQuality, only used when publishing to the relay
+    sendQualities = {}; // Requested by receivers, may arrive before the connection exists
+    streamReleaseGracePeriod = 5000;
+    releaseTimers = {};
 
     render() {
         return html``;
@@ -70,6 +76,11 @@ class WebRTCSupport extends LitElement {
             const videoTrack = this.stream.getTracks().find(track => track.kind === 'video');
             if (entry.videoTrack) {
                 await entry.videoTrack.replaceTrack(videoTrack);
+            } else if (entry.id === this.relayId && this.simulcastLayers.length > 0) {
+                entry.videoTrack = connection.addTransceiver(videoTrack, {
+                    direction: "sendrecv",
+                    sendEncodings: this.simulcastLayers
+                }).sender;
             } else {
                 entry.videoTrack = connection.addTrack(videoTrack);
             }
@@ -103,15 +114,49 @@ class WebRTCSupport extends LitElement {
 
     showRemoteStream(connectionId, viewer) { // Called from Server
         this.remoteVideos[connectionId] = viewer;
-        let entry = this.rtcPeerConnectionEntries[connectionId];
-        if (entry && entry.stream) {
-            console.info(TAG, "Registering viewer", viewer, "for remote connection ID", connectionId, "and showing video stream", entry.stream);
-            viewer.srcObject = entry.stream;
+        const remoteStream = this.remoteStreams[connectionId];
+        if (remoteStream) {
+            console.info(TAG, "Registering viewer", viewer, "for remote connection ID", connectionId, "and showing video stream", remoteStream);
+            viewer.srcObject = remoteStream;
         } else {
             console.info(TAG, "Registering viewer", viewer, "for remote connection ID", connectionId, "without an active stream");
         }
     }
 
+    resumeRemoteStream(sessionId) { // Called from Server
+        clearTimeout(this.releaseTimers[sessionId]);
+        delete this.releaseTimers[sessionId];
+        this.setReceiving(sessionId, true);
+    }
+
+    releaseRemoteStream(sessionId, gracePeriod) { // Called from Server
+        clearTimeout(this.releaseTimers[sessionId]);
+        this.releaseTimers[sessionId] = setTimeout(async () => {
+            delete this.releaseTimers[sessionId];
+            this.setReceiving(sessionId, false);
+            await this.$server.remoteStreamReleased(sessionId);
+        }, gracePeriod);
+    }
+
+    setReceiving(sessionId, receiving) {
+        const entry = this.rtcPeerConnectionEntries[sessionId];
+        if (!entry) {
+            return; // Streams forwarded by a media relay are subscribed to on the server
+        }
+        // Changing the direction renegotiates the connection, and the remote peer stops or resumes sending
+        for (const transceiver of entry.connection.getTransceivers()) {
+            if (transceiver.currentDirection === 'stopped' || transceiver.receiver.track.kind !== 'video') {
+                continue;
+            }
+            const sending = transceiver.sender.track !== null;
+            const direction = receiving ? (sending ? 'sendrecv' : 'recvonly') : (sending ? 'sendonly' : 'inactive');
+            if (transceiver.direction !== direction) {
+                console.info(TAG, receiving ? "Resuming" : "Pausing", "stream from", sessionId);
+                transceiver.direction = direction;
+            }
+        }
+    }
+
     showSelfVideo(viewer) { // Called from Server
         this.selfVideo = viewer;
         this.showLocalStreamInViewer()
@@ -119,6 +164,8 @@ class WebRTCSupport extends LitElement {
 
     hideRemoteStream(connectionId) { // Called from Server
         console.info(TAG, "Removing viewer for remote connection ID", connectionId);
+        clearTimeout(this.releaseTimers[connectionId]);
+        delete this.releaseTimers[connectionId];
         delete this.remoteVideos[connectionId];
     }
 
@@ -138,6 +185,10 @@ class WebRTCSupport extends LitElement {
     }
 
     async invite(targetId) { // Called from Server
+        if (this.rtcPeerConnectionEntries[targetId]) {
+            console.info(TAG, "Already connected to", targetId);
+            return;
+        }
         console.info(TAG, "Inviting", targetId);
         const entry = this.createPeerConnectionEntry(targetId, false);
         await this.addLocalStreamToRemoteConnectionEntry(entry);
@@ -177,6 +228,33 @@ class WebRTCSupport extends LitElement {
         await entry.connection.setRemoteDescription(desc);
     }
 
+    async setSendQuality(targetId, scaleResolutionDownBy, maxBitrate) { // Called from Server
+        this.sendQualities[targetId] = {scaleResolutionDownBy, maxBitrate};
+        const entry = this.rtcPeerConnectionEntries[targetId];
+        if (entry) {
+            await this.applySendQuality(entry);
+        }
+    }
+
+    async applySendQuality(entry) {
+        const quality = this.sendQualities[entry.id];
+        if (!quality || !entry.videoTrack || entry.connection.signalingState !== "stable") {
+            return; // Applied once the sender has been negotiated
+        }
+        const parameters = entry.videoTrack.getParameters();
+        if (!parameters.encodings || parameters.encodings.length === 0) {
+            return;
+        }
+        const encoding = parameters.encodings[0];
+        encoding.scaleResolutionDownBy = quality.scaleResolutionDownBy;
+        if (quality.maxBitrate > 0) {
+            encoding.maxBitrate = quality.maxBitrate;
+        } else {
+            delete encoding.maxBitrate;
+        }
+        await entry.videoTrack.setParameters(parameters);
+    }
+
     async handleNewICECandidate(msg) { // Called from Server
         console.info(TAG, "Handling new ICE candidate", msg);
         const targetId = msg.sender;
@@ -186,7 +264,17 @@ class WebRTCSupport extends LitElement {
             await entry.connection.addIceCandidate(candidate);
         } catch (error) {
             if (!entry.ignoreOffer) {
-                throw err;
+                throw error;
+            }
+        }
+    }
+
+    async handleNewICECandidates(msgs) { // Called from Server
+        for (const msg of msgs) {
+            try {
+                await this.handleNewICECandidate(msg);
+            } catch (error) {
+                console.error(TAG, "Could not handle ICE candidate", msg, error);
             }
         }
     }
@@ -195,14 +283,22 @@ class WebRTCSupport extends LitElement {
         console.info(TAG, "Hanging up connection to", targetId);
         const entry = this.rtcPeerConnectionEntries[targetId];
         if (entry) {
-            this.hideRemoteStream(targetId);
-            const remoteStream = entry.stream;
-            if (remoteStream) {
-                remoteStream.getTracks().forEach(track => track.stop());
-                await this.$server.remoteStreamRemoved(targetId);
+            for (const sessionId of new Set([targetId, ...entry.streamIds])) {
+                await this.removeRemoteStream(sessionId);
             }
             await entry.connection.close();
             delete this.rtcPeerConnectionEntries[targetId];
+            delete this.sendQualities[targetId];
+        }
+    }
+
+    async removeRemoteStream(sessionId) {
+        this.hideRemoteStream(sessionId);
+        const remoteStream = this.remoteStreams[sessionId];
+        if (remoteStream) {
+            delete this.remoteStreams[sessionId];
+            remoteStream.getTracks().forEach(track => track.stop());
+            await this.$server.remoteStreamRemoved(sessionId);
         }
     }
 
@@ -229,6 +325,7 @@ class WebRTCSupport extends LitElement {
             id: targetId,
             polite: polite,
             connection: connection,
+            streamIds: new Set(),
             makingOffer: false,
             ignoreOffer: false
         };
@@ -252,15 +349,27 @@ class WebRTCSupport extends LitElement {
                 remoteStream.addTrack(event.track);
             }
 
-            this.rtcPeerConnectionEntries[targetId].stream = remoteStream;
-            const viewer = this.remoteVideos[targetId];
+            // A media relay forwards the streams of many sessions, and names every stream after its publisher
+            const sessionId = targetId === this.relayId ? remoteStream.id : targetId;
+            if (targetId === this.relayId) {
+                remoteStream.onremovetrack = async () => {
+                    if (remoteStream.getTracks().length === 0) {
+                        entry.streamIds.delete(sessionId);
+                        await this.removeRemoteStream(sessionId);
+                    }
+                };
+            }
+            this.remoteStreams[sessionId] = remoteStream;
+            entry.streamIds.add(sessionId);
+            const viewer = this.remoteVideos[sessionId];
             if (viewer) {
                 console.info(TAG, "Showing remote stream", remoteStream, "in viewer", viewer);
                 viewer.srcObject = remoteStream;
             } else {
                 console.info(TAG, "No viewer available for stream", remoteStream);
+                this.releaseRemoteStream(sessionId, this.streamReleaseGracePeriod);
             }
-            await this.$server.remoteStreamAdded(targetId);
+            await this.$server.remoteStreamAdded(sessionId);
         };
         connection.onnegotiationneeded = async (event) => {
             console.debug(TAG, "onnegotiationneeded", event);
@@ -295,6 +404,9 @@ class WebRTCSupport extends LitElement {
         connection.onsignalingstatechange = async (event) => {
             console.debug(TAG, "onsignalingstatechange", event, "(state:", connection.signalingState, ")");
             switch (connection.signalingState) {
+                case "stable":
+                    await this.applySendQuality(entry);
+                    break;
                 case "closed":
                     await this.hangUp(targetId);
                     break;
@@ -0,0 +1,87 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the throughput of the session registry under contention: lookups by ID, lookups by predicate, and sessions
+ * joining and leaving, each with 1, 8 and 64 signaling threads against a registry of {@value #SESSIONS} sessions.
+ * Compare the scores of {@code OneThread}, {@code EightThreads} and {@code SixtyFourThreads} to see how the registry
+ * scales. Run with {@code mvn -Pbenchmark verify -Djmh.include=SessionRegistryBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class SessionRegistryBenchmark {
+
+    static final int SESSIONS = 1000;
+
+    private TestSignaling signaling;
+    private List<UUID> ids;
+
+    @Setup
+    public void setUp() {
+        // Nobody is invited on the stage until there is a presenter, so joining costs only the registry's own work
+        signaling = TestSignaling.stage();
+        ids = Stream.generate(TestWebRTCSession::new).limit(SESSIONS)
+                .peek(signaling.manager::register)
+                .map(WebRTCSession::id)
+                .toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        signaling.close();
+    }
+
+    @Benchmark
+    public Optional<WebRTCSession> getSession() {
+        return signaling.manager.getSession(randomId());
+    }
+
+    @Benchmark
+    public Optional<WebRTCSession> findSession() {
+        var id = randomId();
+        return signaling.manager.findSession(session -> session.id().equals(id));
+    }
+
+    @Benchmark
+    public void registerAndUnregister(JoiningSession joining) {
+        signaling.manager.register(joining.session);
+        signaling.manager.unregister(joining.session);
+    }
+
+    private UUID randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(SESSIONS));
+    }
+
+    /**
+     * The session each thread keeps joining and leaving with.
+     */
+    @State(Scope.Thread)
+    public static class JoiningSession {
+
+        final TestWebRTCSession session = new TestWebRTCSession();
+    }
+
+    @Threads(1)
+    public static class OneThread extends SessionRegistryBenchmark {
+    }
+
+    @Threads(8)
+    public static class EightThreads extends SessionRegistryBenchmark {
+    }
+
+    @Threads(64)
+    public static class SixtyFourThreads extends SessionRegistryBenchmark {
+    }
+}
@@ -0,0 +1,68 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the per-message cost of signaling: validating a message, and dispatching an offer through the session
+ * manager until the recipient has received it. Run with {@code mvn -Pbenchmark verify}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignalingBenchmark {
+
+    private TestSignaling signaling;
+    private TestWebRTCSession source;
+    private CountingSession recipient;
+    private JsonObject message;
+
+    @Setup
+    public void setUp() {
+        signaling = TestSignaling.stage();
+        source = new TestWebRTCSession();
+        recipient = new CountingSession();
+        signaling.manager.register(source);
+        signaling.manager.register(recipient);
+        message = TestSignaling.message(source, recipient.id());
+    }
+
+    @TearDown
+    public void tearDown() {
+        signaling.close();
+    }
+
+    @Benchmark
+    public void validateMessageFormat() {
+        WebRTCSessionManager.validateMessageFormat(source, recipient.id(), message);
+    }
+
+    @Benchmark
+    public void dispatch() {
+        var expected = recipient.received.get() + 1;
+        signaling.manager.sendVideoOffer(source, recipient.id(), message);
+        while (recipient.received.get() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Only counts offers, so that recording them does not dominate the measurement.
+     */
+    static class CountingSession extends TestWebRTCSession {
+
+        final AtomicLong received = new AtomicLong();
+
+        @Override
+        public void handleInvitation(WebRTCSession source, JsonValue message) {
+            received.incrementAndGet();
+        }
+    }
+}
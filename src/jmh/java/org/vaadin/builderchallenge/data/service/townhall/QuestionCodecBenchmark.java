@@ -0,0 +1,93 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vaadin.collaborationengine.UserInfo;
+import org.openjdk.jmh.annotations.*;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the size and the encoding and decoding time of {@link QuestionCodec} with the Jackson JSON in which
+ * collaboration lists used to store questions. The sizes are printed once per vote count. Run with
+ * {@code mvn -Pbenchmark verify -Djmh.include=QuestionCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuestionCodecBenchmark {
+
+    @Param({"0", "10", "100"})
+    public int votes;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Question question;
+    private JsonQuestion jsonQuestion;
+    private String binary;
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        question = new Question(System.currentTimeMillis() << 22, new UserInfo("user-0", "User 0"),
+                "How will the new office layout affect the teams that work across both floors?");
+        for (var i = 0; i < votes; i++) {
+            var voter = "user-" + i;
+            question.setVote(new UserInfo(voter), new Vote(voter, Vote.Value.values()[i % 3]));
+        }
+        jsonQuestion = JsonQuestion.of(question);
+        binary = QuestionCodec.encodeToString(question);
+        json = mapper.writeValueAsString(jsonQuestion);
+        System.out.printf("%n%d votes: %d bytes binary, %d as Base64, %d bytes JSON%n", votes,
+                QuestionCodec.encode(question).length, binary.length(), json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Benchmark
+    public String encodeBinary() {
+        return QuestionCodec.encodeToString(question);
+    }
+
+    @Benchmark
+    public Question decodeBinary() {
+        return QuestionCodec.decode(binary);
+    }
+
+    @Benchmark
+    public String encodeJson() throws JsonProcessingException {
+        return mapper.writeValueAsString(jsonQuestion);
+    }
+
+    @Benchmark
+    public JsonQuestion decodeJson() throws JsonProcessingException {
+        return mapper.readValue(json, JsonQuestion.class);
+    }
+
+    /**
+     * The fields of a question as Jackson used to write them, with the author and the votes as nested objects.
+     */
+    public record JsonQuestion(Long id, JsonUser authorInfo, String message, Map<String, JsonVote> votes, int score) {
+
+        static JsonQuestion of(Question question) {
+            var author = question.getAuthorInfo();
+            var votes = new LinkedHashMap<String, JsonVote>();
+            question.getVotes().forEach((voterId, vote) ->
+                    votes.put(voterId, new JsonVote(vote.getOriginatorName(), vote.getValue())));
+            return new JsonQuestion(question.getId(),
+                    new JsonUser(author.getId(), author.getName(), null, null, 0),
+                    question.getMessage(), votes, question.getScore());
+        }
+    }
+
+    public record JsonUser(String id, String name, String abbreviation, String image, int colorIndex) {
+    }
+
+    public record JsonVote(String originatorName, Vote.Value value) {
+    }
+}
@@ -0,0 +1,140 @@
+package org.vaadin.builderchallenge.components.refresh;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.server.Command;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Coalesces refresh requests of UI components, so that each one renders at most once per
+ * {@code ui.refresh.interval-ms}, however many events arrive in between.
+ */
+@Service
+public class UiRefreshScheduler implements MeterBinder {
+
+    /**
+     * Requests a refresh of one component.
+     */
+    @FunctionalInterface
+    public interface Refresher {
+
+        /**
+         * Schedules a refresh, unless one is already scheduled. Can be called from any thread.
+         */
+        void request();
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(UiRefreshScheduler.class);
+    private final ScheduledExecutorService executor;
+    private final long intervalNanos;
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public UiRefreshScheduler(@Value("${ui.refresh.interval-ms:100}") long intervalMs) {
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("intervalMs must not be negative");
+        }
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "ui-refresh-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a refresher that runs the render command in the UI of the owner.
+     */
+    public Refresher create(Component owner, Command render) {
+        requireNonNull(owner, "owner must not be null");
+        requireNonNull(render, "render must not be null");
+        return new ScheduledRefresher(owner, render);
+    }
+
+    public UiRefreshStats stats() {
+        return new UiRefreshStats(requested.sum(), merged.sum(), rendered.sum(), dropped.sum());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ui.refresh.requested", this, scheduler -> scheduler.stats().requested())
+                .description("UI refreshes requested")
+                .register(registry);
+        FunctionCounter.builder("ui.refresh.merged", this, scheduler -> scheduler.stats().merged())
+                .description("UI refresh requests folded into an already scheduled refresh")
+                .register(registry);
+        FunctionCounter.builder("ui.refresh.rendered", this, scheduler -> scheduler.stats().rendered())
+                .description("UI refreshes that ran")
+                .register(registry);
+        FunctionCounter.builder("ui.refresh.dropped", this, scheduler -> scheduler.stats().dropped())
+                .description("UI refreshes skipped because their component had left its UI")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class ScheduledRefresher implements Refresher {
+        private final Component owner;
+        private final Command render;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastRender = System.nanoTime() - intervalNanos;
+
+        private ScheduledRefresher(Component owner, Command render) {
+            this.owner = owner;
+            this.render = render;
+        }
+
+        @Override
+        public void request() {
+            requested.increment();
+            if (!scheduled.compareAndSet(false, true)) {
+                merged.increment();
+                return;
+            }
+            var delay = Math.max(0, lastRender + intervalNanos - System.nanoTime());
+            executor.schedule(this::run, delay, TimeUnit.NANOSECONDS);
+        }
+
+        private void run() {
+            var ui = owner.getUI();
+            if (ui.isEmpty()) {
+                scheduled.set(false);
+                dropped.increment();
+                return;
+            }
+            try {
+                ui.get().access(() -> {
+                    // Cleared before rendering, so that changes made during the render schedule another one
+                    scheduled.set(false);
+                    lastRender = System.nanoTime();
+                    rendered.increment();
+                    render.execute();
+                });
+            } catch (UIDetachedException ex) {
+                scheduled.set(false);
+                dropped.increment();
+                log.trace("Dropped refresh of {}, its UI is detached", owner);
+            }
+        }
+    }
+}
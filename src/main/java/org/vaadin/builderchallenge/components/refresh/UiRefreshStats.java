@@ -0,0 +1,12 @@
+package org.vaadin.builderchallenge.components.refresh;
+
+/**
+ * Snapshot of the {@link UiRefreshScheduler} counters.
+ *
+ * @param requested refreshes requested
+ * @param merged    requests folded into an already scheduled refresh
+ * @param rendered  refreshes that ran
+ * @param dropped   refreshes skipped because their component had left its UI
+ */
+public record UiRefreshStats(long requested, long merged, long rendered, long dropped) {
+}
@@ -0,0 +1,102 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.JsonValue;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Queues ICE candidates per recipient and hands them over as one batch, either when the flush window expires or when
+ * the batch is full. A peer typically gathers dozens of candidates within a few milliseconds, and this turns them into
+ * a single {@link WebRTCSession#handleNewICECandidates(List)} call.
+ */
+@Component
+public class ICECandidateRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ICECandidateRelay.class);
+    private final Map<UUID, Batch> pending = new ConcurrentHashMap<>();
+    private final SignalingDispatcher signalingDispatcher;
+    private final ScheduledExecutorService executor;
+    private final long flushWindowMs;
+    private final int maxBatchSize;
+
+    public ICECandidateRelay(SignalingDispatcher signalingDispatcher,
+                             @Value("${webrtc.ice.flush-window-ms:20}") long flushWindowMs,
+                             @Value("${webrtc.ice.max-batch-size:16}") int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.signalingDispatcher = requireNonNull(signalingDispatcher, "signalingDispatcher must not be null");
+        this.flushWindowMs = flushWindowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "webrtc-ice-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void relay(WebRTCSession source, WebRTCSession recipient, JsonValue message) {
+        var candidate = new SignalingMessage(source, message);
+        var fullBatch = new Batch[1];
+        pending.compute(recipient.id(), (id, batch) -> {
+            if (batch == null) {
+                var newBatch = new Batch(recipient);
+                executor.schedule(() -> flush(id, newBatch), flushWindowMs, TimeUnit.MILLISECONDS);
+                batch = newBatch;
+            }
+            batch.messages.add(candidate);
+            if (batch.messages.size() >= maxBatchSize) {
+                fullBatch[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (fullBatch[0] != null) {
+            deliver(fullBatch[0]);
+        }
+    }
+
+    public void discard(WebRTCSession recipient) {
+        pending.remove(recipient.id());
+    }
+
+    private void flush(UUID recipientId, Batch batch) {
+        if (pending.remove(recipientId, batch)) {
+            deliver(batch);
+        }
+    }
+
+    private void deliver(Batch batch) {
+        log.trace("Relaying {} ICE candidates to {}", batch.messages.size(), batch.recipient);
+        var messages = List.copyOf(batch.messages);
+        signalingDispatcher.dispatch(batch.recipient, () -> batch.recipient.handleNewICECandidates(messages));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class Batch {
+        private final WebRTCSession recipient;
+        private final List<SignalingMessage> messages = new ArrayList<>();
+
+        private Batch(WebRTCSession recipient) {
+            this.recipient = recipient;
+        }
+    }
+}
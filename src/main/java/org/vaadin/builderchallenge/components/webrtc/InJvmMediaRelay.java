@@ -0,0 +1,171 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link MediaRelay} that forwards packets inside the JVM. It does not negotiate media with browsers: every offer is
+ * acknowledged with an answer carrying the offered SDP back, so that the signaling flow completes, and packets are
+ * handed to it with {@link #forward} by whatever receives the publishers' streams. Each packet goes to the
+ * {@link MediaSink} of every connected subscriber that is subscribed to the publisher in the forwarded layer.
+ * <p>
+ * Use it to run the selective forwarding topology without a media server, e.g. in tests and during development.
+ */
+public class InJvmMediaRelay implements MediaRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(InJvmMediaRelay.class);
+    private final UUID id = UUID.randomUUID();
+    private final Set<UUID> publishers = ConcurrentHashMap.newKeySet();
+    // Sessions that have sent their offer, i.e. whose connection to the relay is up
+    private final Set<UUID> connected = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, MediaSink> sinks = new ConcurrentHashMap<>();
+    // Publisher ID -> subscriber ID -> subscription, so that forwarding a packet is a single lookup
+    private final Map<UUID, Map<UUID, Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Receives the packets forwarded to a subscriber.
+     */
+    @FunctionalInterface
+    public interface MediaSink {
+
+        void receive(UUID publisherId, StreamQuality layer, ByteBuffer packet);
+    }
+
+    /**
+     * Sets where the packets forwarded to the session go. Nothing is forwarded before the session has connected.
+     */
+    public void attach(UUID sessionId, MediaSink sink) {
+        requireNonNull(sessionId, "sessionId must not be null");
+        sinks.put(sessionId, requireNonNull(sink, "sink must not be null"));
+    }
+
+    /**
+     * Forwards a packet of the publisher's stream in the given simulcast layer, and returns the number of subscribers
+     * it was forwarded to. Packets of sessions that are not publishing are dropped.
+     */
+    public int forward(UUID publisherId, StreamQuality layer, ByteBuffer packet) {
+        if (!publishers.contains(publisherId)) {
+            return 0;
+        }
+        var forwarded = 0;
+        for (var entry : subscriptions.getOrDefault(publisherId, Map.of()).entrySet()) {
+            var subscription = entry.getValue();
+            var sink = sinks.get(entry.getKey());
+            if (subscription.subscribed && subscription.quality == layer && sink != null
+                    && connected.contains(entry.getKey())) {
+                sink.receive(publisherId, layer, packet.asReadOnlyBuffer());
+                forwarded++;
+            }
+        }
+        return forwarded;
+    }
+
+    @Override
+    public void publisherJoined(WebRTCSession publisher) {
+        log.debug("{} publishes to {}", publisher, this);
+        publishers.add(publisher.id());
+    }
+
+    @Override
+    public void publisherLeft(WebRTCSession publisher) {
+        log.debug("{} left {}", publisher, this);
+        publishers.remove(publisher.id());
+        connected.remove(publisher.id());
+        sinks.remove(publisher.id());
+        subscriptions.remove(publisher.id());
+        subscriptions.values().forEach(subscribers -> subscribers.remove(publisher.id()));
+    }
+
+    @Override
+    public void setSubscribed(WebRTCSession subscriber, UUID publisherId, boolean subscribed) {
+        if (publishers.contains(publisherId)) {
+            subscription(subscriber.id(), publisherId).subscribed = subscribed;
+        }
+    }
+
+    @Override
+    public void setQuality(WebRTCSession subscriber, UUID publisherId, StreamQuality quality) {
+        requireNonNull(quality, "quality must not be null");
+        if (publishers.contains(publisherId)) {
+            subscription(subscriber.id(), publisherId).quality = quality;
+        }
+    }
+
+    private Subscription subscription(UUID subscriberId, UUID publisherId) {
+        return subscriptions.computeIfAbsent(publisherId, ignored -> new ConcurrentHashMap<>())
+                .computeIfAbsent(subscriberId, ignored -> new Subscription());
+    }
+
+    @Override
+    public UUID id() {
+        return id;
+    }
+
+    @Override
+    public void invite(WebRTCSession target) {
+        // The sessions connect to the relay, never the other way around
+        throw new UnsupportedOperationException("The media relay does not invite sessions");
+    }
+
+    @Override
+    public void handleInvitation(WebRTCSession source, JsonValue message) {
+        if (!publishers.contains(source.id())) {
+            log.debug("Ignoring offer from {}, which is not publishing", source);
+            return;
+        }
+        connected.add(source.id());
+        var answer = Json.createObject();
+        answer.put("sender", id.toString());
+        answer.put("target", source.id().toString());
+        answer.put("type", "answer");
+        answer.put("sdp", message instanceof JsonObject offer && offer.hasKey("sdp") ? offer.getString("sdp") : "");
+        source.handleInvitationAnswer(this, answer);
+    }
+
+    @Override
+    public void handleInvitationAnswer(WebRTCSession source, JsonValue message) {
+        log.debug("Ignoring answer from {}, the relay never sends offers", source);
+    }
+
+    @Override
+    public void handleNewICECandidate(WebRTCSession source, JsonValue message) {
+        // There is no ICE agent, packets are handed over in the JVM
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        throw new UnsupportedOperationException("The media relay has no attributes");
+    }
+
+    @Override
+    public <T> T getAttribute(String name, T defaultValue) {
+        return defaultValue;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return Map.of();
+    }
+
+    @Override
+    public String toString() {
+        return "%s{%s}".formatted(getClass().getSimpleName(), id);
+    }
+
+    private static final class Subscription {
+
+        volatile boolean subscribed;
+        volatile StreamQuality quality = StreamQuality.FULL;
+    }
+}
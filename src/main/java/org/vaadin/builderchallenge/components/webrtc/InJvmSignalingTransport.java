@@ -0,0 +1,78 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Connects every node started with the same cluster name inside one JVM, e.g. several Spring contexts. A node that is
+ * alone in its cluster behaves like a standalone server.
+ */
+public class InJvmSignalingTransport implements SignalingTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(InJvmSignalingTransport.class);
+    private static final Map<String, Set<InJvmSignalingTransport>> clusters = new ConcurrentHashMap<>();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String clusterName;
+    private final Set<UUID> localSessions = ConcurrentHashMap.newKeySet();
+    private volatile Listener listener;
+
+    public InJvmSignalingTransport(String clusterName) {
+        this.clusterName = requireNonNull(clusterName, "clusterName must not be null");
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = requireNonNull(listener, "listener must not be null");
+        var members = clusters.computeIfAbsent(clusterName, name -> ConcurrentHashMap.newKeySet());
+        members.add(this);
+        log.debug("Node {} joined in-JVM cluster {}", nodeId, clusterName);
+        otherMembers().forEach(member -> member.localSessions.forEach(
+                sessionId -> listener.onRemoteSessionRegistered(member.nodeId, sessionId)));
+    }
+
+    @Override
+    public void stop() {
+        var members = clusters.get(clusterName);
+        if (members != null && members.remove(this)) {
+            log.debug("Node {} left in-JVM cluster {}", nodeId, clusterName);
+            members.forEach(member -> member.listener.onNodeLeft(nodeId));
+        }
+    }
+
+    @Override
+    public void publishSessionRegistered(UUID sessionId) {
+        localSessions.add(sessionId);
+        otherMembers().forEach(member -> member.listener.onRemoteSessionRegistered(nodeId, sessionId));
+    }
+
+    @Override
+    public void publishSessionUnregistered(UUID sessionId) {
+        localSessions.remove(sessionId);
+        otherMembers().forEach(member -> member.listener.onRemoteSessionUnregistered(nodeId, sessionId));
+    }
+
+    @Override
+    public void send(String nodeId, SignalingEnvelope envelope) {
+        otherMembers().filter(member -> member.nodeId.equals(nodeId)).findFirst().ifPresentOrElse(
+                member -> member.listener.onEnvelope(this.nodeId, envelope),
+                () -> log.debug("Dropping {} for unknown node {}", envelope.type(), nodeId)
+        );
+    }
+
+    private Stream<InJvmSignalingTransport> otherMembers() {
+        return clusters.getOrDefault(clusterName, Set.of()).stream().filter(member -> member != this);
+    }
+}
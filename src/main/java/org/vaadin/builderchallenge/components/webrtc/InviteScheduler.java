@@ -0,0 +1,77 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dispatches invitations in rate-limited batches, so that a large room joining at once does not turn into a burst of
+ * UI pushes. Every inviter gets at most one {@link WebRTCSession#inviteAll(Collection)} call per tick.
+ */
+@Component
+public class InviteScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(InviteScheduler.class);
+    private final Queue<Invitation> pending = new ConcurrentLinkedQueue<>();
+    private final SignalingDispatcher signalingDispatcher;
+    private final ScheduledExecutorService executor;
+    private final int invitesPerTick;
+
+    public InviteScheduler(SignalingDispatcher signalingDispatcher,
+                           @Value("${webrtc.join.invites-per-tick:32}") int invitesPerTick,
+                           @Value("${webrtc.join.invite-interval-ms:100}") long intervalMs) {
+        if (invitesPerTick < 1) {
+            throw new IllegalArgumentException("invitesPerTick must be positive");
+        }
+        this.signalingDispatcher = requireNonNull(signalingDispatcher, "signalingDispatcher must not be null");
+        this.invitesPerTick = invitesPerTick;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "webrtc-invite-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::dispatchBatch, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void schedule(WebRTCSession inviter, Collection<? extends WebRTCSession> targets) {
+        targets.forEach(target -> pending.add(new Invitation(inviter, target)));
+    }
+
+    public void cancel(WebRTCSession session) {
+        pending.removeIf(invitation -> invitation.inviter().equals(session) || invitation.target().equals(session));
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private void dispatchBatch() {
+        var batch = new LinkedHashMap<WebRTCSession, List<WebRTCSession>>();
+        Invitation invitation;
+        for (var i = 0; i < invitesPerTick && (invitation = pending.poll()) != null; ++i) {
+            batch.computeIfAbsent(invitation.inviter(), inviter -> new ArrayList<>()).add(invitation.target());
+        }
+        batch.forEach((inviter, targets) -> {
+            log.trace("{} sends {} invitations", inviter, targets.size());
+            signalingDispatcher.dispatch(inviter, () -> inviter.inviteAll(targets));
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Invitation(WebRTCSession inviter, WebRTCSession target) {
+    }
+}
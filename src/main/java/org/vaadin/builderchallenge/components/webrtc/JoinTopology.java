@@ -0,0 +1,23 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+/**
+ * Decides which existing sessions a newly registered session is asked to connect to.
+ */
+public enum JoinTopology {
+    /**
+     * Every session connects to every other session.
+     */
+    FULL_MESH,
+    /**
+     * New sessions only connect to the designated presenters.
+     */
+    STAGE,
+    /**
+     * Every session connects to the {@link MediaRelay} only, which forwards the streams of the other sessions.
+     */
+    SELECTIVE_FORWARDING,
+    /**
+     * {@link #FULL_MESH} while the room is small, {@link #STAGE} once it grows past the configured limit.
+     */
+    AUTO
+}
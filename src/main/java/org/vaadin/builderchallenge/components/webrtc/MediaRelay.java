@@ -0,0 +1,33 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import java.util.UUID;
+
+/**
+ * A server-side peer used with {@link JoinTopology#SELECTIVE_FORWARDING}. Every session publishes its stream to the
+ * relay once, over a single peer connection, and the relay forwards the other sessions' streams over that same
+ * connection. A forwarded stream must use the publishing session's ID as its stream ID, so that the client can tell
+ * the streams apart.
+ * <p>
+ * Signaling with the relay goes through the {@link WebRTCSessionManager} like with any other session, but the relay is
+ * not a participant: it is not registered, so session lookups never return it. Register an implementation as a Spring
+ * bean to enable the topology, e.g. {@link InJvmMediaRelay} with {@code webrtc.media-relay=in-jvm}.
+ */
+public interface MediaRelay extends WebRTCSession {
+
+    void publisherJoined(WebRTCSession publisher);
+
+    void publisherLeft(WebRTCSession publisher);
+
+    /**
+     * Starts or stops forwarding the stream of the given publisher to the subscriber. Subscribers only subscribe to
+     * streams they are currently showing.
+     */
+    void setSubscribed(WebRTCSession subscriber, UUID publisherId, boolean subscribed);
+
+    /**
+     * Selects the simulcast layer of the publisher's stream that is forwarded to the subscriber.
+     *
+     * @see StreamQuality#rid()
+     */
+    void setQuality(WebRTCSession subscriber, UUID publisherId, StreamQuality quality);
+}
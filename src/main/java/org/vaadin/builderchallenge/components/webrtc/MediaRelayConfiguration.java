@@ -0,0 +1,19 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the {@link MediaRelay} with {@code webrtc.media-relay}. There is none by default, only {@code in-jvm} is built
+ * in, which is enough for the selective forwarding topology in tests and during development.
+ */
+@Configuration
+public class MediaRelayConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "webrtc.media-relay", havingValue = "in-jvm")
+    MediaRelay inJvmMediaRelay() {
+        return new InJvmMediaRelay();
+    }
+}
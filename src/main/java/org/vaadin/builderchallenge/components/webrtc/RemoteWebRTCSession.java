@@ -0,0 +1,105 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.Json;
+import elemental.json.JsonValue;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Stands in for a session owned by another node, and forwards everything sent to it through the
+ * {@link SignalingTransport}. Attributes are not replicated between nodes, so they are only visible on this node.
+ */
+class RemoteWebRTCSession implements WebRTCSession {
+
+    private final UUID id;
+    private final String nodeId;
+    private final SignalingTransport transport;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    RemoteWebRTCSession(UUID id, String nodeId, SignalingTransport transport) {
+        this.id = requireNonNull(id, "id must not be null");
+        this.nodeId = requireNonNull(nodeId, "nodeId must not be null");
+        this.transport = requireNonNull(transport, "transport must not be null");
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public UUID id() {
+        return id;
+    }
+
+    @Override
+    public void invite(WebRTCSession target) {
+        send(SignalingEnvelope.Type.INVITE, target, null);
+    }
+
+    @Override
+    public void handleInvitation(WebRTCSession source, JsonValue message) {
+        send(SignalingEnvelope.Type.VIDEO_OFFER, source, message);
+    }
+
+    @Override
+    public void handleInvitationAnswer(WebRTCSession source, JsonValue message) {
+        send(SignalingEnvelope.Type.VIDEO_ANSWER, source, message);
+    }
+
+    @Override
+    public void handleNewICECandidate(WebRTCSession source, JsonValue message) {
+        handleNewICECandidates(List.of(new SignalingMessage(source, message)));
+    }
+
+    @Override
+    public void handleNewICECandidates(List<SignalingMessage> messages) {
+        var candidatesBySource = new LinkedHashMap<WebRTCSession, List<JsonValue>>();
+        messages.forEach(message -> candidatesBySource
+                .computeIfAbsent(message.source(), source -> new ArrayList<>())
+                .add(message.payload()));
+        candidatesBySource.forEach((source, candidates) -> {
+            var payload = Json.createArray();
+            for (var i = 0; i < candidates.size(); ++i) {
+                payload.set(i, candidates.get(i));
+            }
+            send(SignalingEnvelope.Type.NEW_ICE_CANDIDATES, source, payload);
+        });
+    }
+
+    @Override
+    public void handleQualityRequest(WebRTCSession source, StreamQuality quality) {
+        send(SignalingEnvelope.Type.QUALITY_REQUEST, source, Json.create(quality.name()));
+    }
+
+    private void send(SignalingEnvelope.Type type, WebRTCSession source, JsonValue payload) {
+        transport.send(nodeId, new SignalingEnvelope(type, source.id(), id, payload));
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String name, T defaultValue) {
+        return (T) attributes.getOrDefault(name, defaultValue);
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return Map.copyOf(attributes);
+    }
+
+    @Override
+    public String toString() {
+        return "%s{%s@%s}".formatted(getClass().getSimpleName(), id, nodeId);
+    }
+}
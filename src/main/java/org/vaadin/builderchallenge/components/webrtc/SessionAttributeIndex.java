@@ -0,0 +1,54 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index from attribute name and value to the sessions that currently have that value. It is kept up to
+ * date incrementally as attributes change, so lookups do not need to scan every session.
+ */
+class SessionAttributeIndex {
+
+    private final Map<String, Map<Object, Set<WebRTCSession>>> index = new ConcurrentHashMap<>();
+
+    void addAll(WebRTCSession session, Map<String, Object> attributes) {
+        attributes.forEach((name, value) -> add(session, name, value));
+    }
+
+    void removeAll(WebRTCSession session, Map<String, Object> attributes) {
+        attributes.forEach((name, value) -> remove(session, name, value));
+    }
+
+    void update(WebRTCSession session, String name, Object oldValue, Object newValue) {
+        remove(session, name, oldValue);
+        add(session, name, newValue);
+    }
+
+    Set<WebRTCSession> find(String name, Object value) {
+        var values = index.get(name);
+        if (values == null || value == null) {
+            return Set.of();
+        }
+        var sessions = values.get(value);
+        return sessions == null ? Set.of() : Set.copyOf(sessions);
+    }
+
+    private void add(WebRTCSession session, String name, Object value) {
+        if (value != null) {
+            index.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(value, key -> ConcurrentHashMap.newKeySet())
+                    .add(session);
+        }
+    }
+
+    private void remove(WebRTCSession session, String name, Object value) {
+        var values = index.get(name);
+        if (values != null && value != null) {
+            values.computeIfPresent(value, (key, sessions) -> {
+                sessions.remove(session);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers signaling messages to their recipients off the sender's request thread. Every recipient has its own
+ * mailbox that is drained in order by a virtual thread, so a slow or locked recipient UI only delays its own messages.
+ * Idle mailboxes are removed.
+ */
+@Component
+public class SignalingDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(SignalingDispatcher.class);
+    private final Map<UUID, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("webrtc-signaling-", 0).factory());
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder queueDepth = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    public void dispatch(WebRTCSession recipient, Runnable delivery) {
+        var pendingDelivery = new PendingDelivery(delivery, System.nanoTime());
+        var mailbox = mailboxes.compute(recipient.id(), (id, existing) -> {
+            var target = existing == null ? new Mailbox(id, recipient) : existing;
+            target.queue.add(pendingDelivery);
+            return target;
+        });
+        dispatched.increment();
+        queueDepth.increment();
+        if (mailbox.running.compareAndSet(false, true)) {
+            executor.execute(mailbox::drain);
+        }
+    }
+
+    /**
+     * Discards everything still queued for the given recipient.
+     */
+    public void close(WebRTCSession recipient) {
+        var mailbox = mailboxes.remove(recipient.id());
+        if (mailbox != null) {
+            mailbox.closed = true;
+        }
+    }
+
+    public SignalingStats stats() {
+        var maxMailboxDepth = mailboxes.values().stream().mapToLong(mailbox -> mailbox.queue.size()).max().orElse(0);
+        var deliveredCount = delivered.sum();
+        var averageLatency = deliveredCount == 0 ? 0 : totalLatencyNanos.sum() / deliveredCount;
+        return new SignalingStats(dispatched.sum(), deliveredCount, dropped.sum(), queueDepth.sum(), maxMailboxDepth,
+                Duration.ofNanos(averageLatency), latencyHistogram.percentile(0.5), latencyHistogram.percentile(0.99),
+                Duration.ofNanos(maxLatencyNanos.get()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void recordDelivery(PendingDelivery delivery) {
+        var latency = System.nanoTime() - delivery.dispatchedAt();
+        delivered.increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        latencyHistogram.record(latency);
+    }
+
+    private record PendingDelivery(Runnable delivery, long dispatchedAt) {
+    }
+
+    private final class Mailbox {
+        private final UUID id;
+        private final WebRTCSession recipient;
+        private final Queue<PendingDelivery> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Mailbox(UUID id, WebRTCSession recipient) {
+            this.id = id;
+            this.recipient = recipient;
+        }
+
+        private void drain() {
+            do {
+                PendingDelivery next;
+                while ((next = queue.poll()) != null) {
+                    queueDepth.decrement();
+                    deliver(next);
+                }
+                running.set(false);
+            } while (!queue.isEmpty() && running.compareAndSet(false, true));
+            mailboxes.computeIfPresent(id, (key, mailbox) ->
+                    mailbox == this && queue.isEmpty() && !running.get() ? null : mailbox);
+        }
+
+        private void deliver(PendingDelivery next) {
+            if (closed) {
+                dropped.increment();
+                return;
+            }
+            try {
+                next.delivery().run();
+                recordDelivery(next);
+            } catch (RuntimeException ex) {
+                dropped.increment();
+                log.error("Could not deliver signaling message to {}", recipient, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+import java.util.UUID;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A signaling message on its way to a session owned by another node. For {@link Type#INVITE}, the source is the
+ * session the recipient should invite.
+ */
+public record SignalingEnvelope(Type type, UUID source, UUID recipient, JsonValue payload) {
+
+    public SignalingEnvelope {
+        requireNonNull(type, "type must not be null");
+        requireNonNull(source, "source must not be null");
+        requireNonNull(recipient, "recipient must not be null");
+    }
+
+    public JsonObject toJson() {
+        var json = Json.createObject();
+        json.put("type", type.name());
+        json.put("source", source.toString());
+        json.put("recipient", recipient.toString());
+        if (payload != null) {
+            json.put("payload", payload);
+        }
+        return json;
+    }
+
+    public static SignalingEnvelope fromJson(JsonObject json) {
+        return new SignalingEnvelope(
+                Type.valueOf(json.getString("type")),
+                UUID.fromString(json.getString("source")),
+                UUID.fromString(json.getString("recipient")),
+                json.hasKey("payload") ? json.get("payload") : null
+        );
+    }
+
+    public enum Type {
+        INVITE,
+        VIDEO_OFFER,
+        VIDEO_ANSWER,
+        NEW_ICE_CANDIDATES,
+        QUALITY_REQUEST
+    }
+}
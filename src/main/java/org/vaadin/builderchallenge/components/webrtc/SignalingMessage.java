@@ -0,0 +1,6 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.JsonValue;
+
+public record SignalingMessage(WebRTCSession source, JsonValue payload) {
+}
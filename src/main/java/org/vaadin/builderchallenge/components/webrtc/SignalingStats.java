@@ -0,0 +1,21 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the {@link SignalingDispatcher} counters.
+ *
+ * @param dispatched      messages accepted for delivery
+ * @param delivered       messages handed over to their recipient
+ * @param dropped         messages discarded because the recipient had left or the delivery failed
+ * @param queueDepth      messages currently waiting in any mailbox
+ * @param maxMailboxDepth messages waiting in the fullest mailbox
+ * @param averageLatency  average time from dispatch to delivery
+ * @param medianLatency   median time from dispatch to delivery
+ * @param p99Latency      99th percentile of the time from dispatch to delivery
+ * @param maxLatency      longest time from dispatch to delivery
+ */
+public record SignalingStats(long dispatched, long delivered, long dropped, long queueDepth, long maxMailboxDepth,
+                             Duration averageLatency, Duration medianLatency, Duration p99Latency,
+                             Duration maxLatency) {
+}
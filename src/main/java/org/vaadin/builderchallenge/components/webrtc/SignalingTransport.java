@@ -0,0 +1,33 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import java.util.UUID;
+
+/**
+ * Connects the {@link WebRTCSessionManager}s of all nodes in a cluster. The transport announces the local sessions to
+ * the other nodes and carries signaling messages to whichever node owns the recipient.
+ */
+public interface SignalingTransport {
+
+    String nodeId();
+
+    void start(Listener listener);
+
+    void stop();
+
+    void publishSessionRegistered(UUID sessionId);
+
+    void publishSessionUnregistered(UUID sessionId);
+
+    void send(String nodeId, SignalingEnvelope envelope);
+
+    interface Listener {
+
+        void onRemoteSessionRegistered(String nodeId, UUID sessionId);
+
+        void onRemoteSessionUnregistered(String nodeId, UUID sessionId);
+
+        void onNodeLeft(String nodeId);
+
+        void onEnvelope(String nodeId, SignalingEnvelope envelope);
+    }
+}
@@ -0,0 +1,49 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Picks the {@link SignalingTransport} with {@code webrtc.cluster.transport}: {@code in-jvm} (the default) or
+ * {@code tcp}. The TCP transport listens on the loopback interface unless {@code webrtc.cluster.bind-address} says
+ * otherwise, and only talks to peers that know {@code webrtc.cluster.secret}.
+ */
+@Configuration
+public class SignalingTransportConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "webrtc.cluster.transport", havingValue = "in-jvm", matchIfMissing = true)
+    SignalingTransport inJvmSignalingTransport(@Value("${webrtc.cluster.name:default}") String clusterName) {
+        return new InJvmSignalingTransport(clusterName);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "webrtc.cluster.transport", havingValue = "tcp")
+    SignalingTransport tcpSignalingTransport(@Value("${webrtc.cluster.bind-address:127.0.0.1}") String bindAddress,
+                                             @Value("${webrtc.cluster.port:7800}") int port,
+                                             @Value("${webrtc.cluster.peers:}") String peers,
+                                             @Value("${webrtc.cluster.secret:}") String secret) {
+        return new TcpSignalingTransport(new InetSocketAddress(bindAddress, port), parsePeers(peers), secret);
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        return Stream.of(peers.split(","))
+                .map(String::trim)
+                .filter(peer -> !peer.isEmpty())
+                .map(peer -> {
+                    var separator = peer.lastIndexOf(':');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Peer must be given as host:port: " + peer);
+                    }
+                    return new InetSocketAddress(peer.substring(0, separator),
+                            Integer.parseInt(peer.substring(separator + 1)));
+                })
+                .toList();
+    }
+}
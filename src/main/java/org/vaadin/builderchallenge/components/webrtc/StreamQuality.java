@@ -0,0 +1,36 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+/**
+ * Quality tiers a remote stream can be requested in. When publishing to a {@link MediaRelay}, the client sends one
+ * simulcast layer per tier, identified by {@link #rid()}.
+ */
+public enum StreamQuality {
+    THUMBNAIL("thumbnail", 4.0, 150_000),
+    MEDIUM("medium", 2.0, 500_000),
+    FULL("full", 1.0, 0);
+
+    private final String rid;
+    private final double scaleResolutionDownBy;
+    private final int maxBitrate;
+
+    StreamQuality(String rid, double scaleResolutionDownBy, int maxBitrate) {
+        this.rid = rid;
+        this.scaleResolutionDownBy = scaleResolutionDownBy;
+        this.maxBitrate = maxBitrate;
+    }
+
+    public String rid() {
+        return rid;
+    }
+
+    public double scaleResolutionDownBy() {
+        return scaleResolutionDownBy;
+    }
+
+    /**
+     * Returns the maximum bitrate in bits per second, or 0 if the bitrate is not limited.
+     */
+    public int maxBitrate() {
+        return maxBitrate;
+    }
+}
@@ -1,14 +1,47 @@
 package org.vaadin.builderchallenge.components.webrtc;
 
-import com.vaadin.flow.component.Component;
-import com.vaadin.flow.component.HasSize;
-import com.vaadin.flow.component.HasStyle;
-import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.component.*;
+import com.vaadin.flow.shared.Registration;
+
+import static java.util.Objects.requireNonNull;
 
 @Tag("video")
 public class StreamViewer extends Component implements HasStyle, HasSize {
 
+    private StreamQuality quality = StreamQuality.FULL;
+
     public StreamViewer() {
         getElement().setAttribute("autoplay", true);
     }
+
+    /**
+     * Requests the quality the remote stream shown in this viewer should be sent in, e.g. a thumbnail for small
+     * previews. Has no effect on the local camera.
+     */
+    public void setQuality(StreamQuality quality) {
+        requireNonNull(quality, "quality must not be null");
+        if (this.quality != quality) {
+            this.quality = quality;
+            fireEvent(new QualityChangeEvent(this));
+        }
+    }
+
+    public StreamQuality getQuality() {
+        return quality;
+    }
+
+    public Registration addQualityChangeListener(ComponentEventListener<QualityChangeEvent> listener) {
+        return addListener(QualityChangeEvent.class, listener);
+    }
+
+    public static class QualityChangeEvent extends ComponentEvent<StreamViewer> {
+
+        public QualityChangeEvent(StreamViewer source) {
+            super(source, false);
+        }
+
+        public StreamQuality getQuality() {
+            return getSource().getQuality();
+        }
+    }
 }
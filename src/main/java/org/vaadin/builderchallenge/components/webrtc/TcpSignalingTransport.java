@@ -0,0 +1,459 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Connects the nodes of a cluster over plain TCP. Every node listens on its own address and dials the configured
+ * peers, reconnecting when a connection drops. Frames are length-prefixed JSON objects, and either side of a
+ * connection can be used for sending.
+ * <p>
+ * A connection starts with both sides sending a random challenge. The dialing side then proves in its hello frame
+ * that it knows the shared cluster secret, with an HMAC over both challenges, both node IDs and its role. The accepting
+ * side only answers with a hello of its own once that proof checks out, so a node never signs anything for a peer it
+ * has not authenticated, and a hello is worthless on any other connection or in the other direction. Sessions are
+ * announced once both sides have sent their hello. Nothing else is accepted before the hello, and every later frame
+ * is attributed to the node that sent it. Frames are written by a thread of the connection's
+ * own, so a peer that stops reading is disconnected once its queue is full instead of blocking the caller.
+ */
+public class TcpSignalingTransport implements SignalingTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpSignalingTransport.class);
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+    private static final long MAX_PENDING_BYTES = 16 * 1024 * 1024;
+    private static final long RECONNECT_INTERVAL_MS = 2000;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte[] CLOSE = new byte[0];
+    private static final String INITIATOR = "initiator";
+    private static final String ACCEPTOR = "acceptor";
+    private final String nodeId = UUID.randomUUID().toString();
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private final SecretKeySpec secret;
+    private final SecureRandom random = new SecureRandom();
+    private final Set<UUID> localSessions = ConcurrentHashMap.newKeySet();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Connection>> connectionsByNode = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, Connection> outboundConnections = new ConcurrentHashMap<>();
+    // Orders hello frames against session announcements, so that every session reaches a new peer either in the hello
+    // or as a later frame. Only ever held while queueing, never while writing.
+    private final ReentrantLock announcementLock = new ReentrantLock();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("webrtc-cluster-", 0).factory());
+    private volatile Listener listener;
+    private volatile ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    public TcpSignalingTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers, String secret) {
+        this.bindAddress = requireNonNull(bindAddress, "bindAddress must not be null");
+        this.peers = List.copyOf(peers);
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("The TCP signaling transport requires a cluster secret");
+        }
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns the address the node listens on, which tells the port when the transport was bound to port 0.
+     */
+    InetSocketAddress localAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read the cluster listen address", ex);
+        }
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = requireNonNull(listener, "listener must not be null");
+        try {
+            serverChannel = ServerSocketChannel.open().bind(bindAddress);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not listen for cluster connections on " + bindAddress, ex);
+        }
+        running = true;
+        log.info("Node {} listening for cluster connections on {}, peers are {}", nodeId, localAddress(), peers);
+        executor.execute(this::acceptConnections);
+        executor.execute(this::maintainOutboundConnections);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException ex) {
+            log.debug("Could not close the cluster server channel", ex);
+        }
+        List.copyOf(connections).forEach(Connection::close);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void publishSessionRegistered(UUID sessionId) {
+        var frame = newFrame("session-up");
+        frame.put("session", sessionId.toString());
+        announce(() -> localSessions.add(sessionId), frame);
+    }
+
+    @Override
+    public void publishSessionUnregistered(UUID sessionId) {
+        var frame = newFrame("session-down");
+        frame.put("session", sessionId.toString());
+        announce(() -> localSessions.remove(sessionId), frame);
+    }
+
+    @Override
+    public void send(String nodeId, SignalingEnvelope envelope) {
+        var frame = newFrame("envelope");
+        frame.put("envelope", envelope.toJson());
+        connectionsByNode.getOrDefault(nodeId, Set.of()).stream().findFirst().ifPresentOrElse(
+                connection -> connection.enqueue(frame),
+                () -> log.debug("Dropping {} for unreachable node {}", envelope.type(), nodeId)
+        );
+    }
+
+    private void announce(Runnable update, JsonObject frame) {
+        announcementLock.lock();
+        try {
+            update.run();
+            connections.stream().filter(connection -> connection.announcing).forEach(connection -> connection.enqueue(frame));
+        } finally {
+            announcementLock.unlock();
+        }
+    }
+
+    private JsonObject newFrame(String type) {
+        var frame = Json.createObject();
+        frame.put("node", nodeId);
+        frame.put("type", type);
+        return frame;
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                var channel = serverChannel.accept();
+                open(channel, false);
+            } catch (IOException ex) {
+                if (running) {
+                    log.warn("Could not accept a cluster connection", ex);
+                }
+            }
+        }
+    }
+
+    private void maintainOutboundConnections() {
+        while (running) {
+            for (var peer : peers) {
+                var existing = outboundConnections.get(peer);
+                if (existing == null || !existing.isOpen()) {
+                    try {
+                        var address = new InetSocketAddress(peer.getHostString(), peer.getPort());
+                        outboundConnections.put(peer, open(SocketChannel.open(address), true));
+                        log.info("Node {} connected to peer {}", nodeId, peer);
+                    } catch (IOException ex) {
+                        log.debug("Could not connect to peer {}: {}", peer, ex.getMessage());
+                    }
+                }
+            }
+            try {
+                Thread.sleep(RECONNECT_INTERVAL_MS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Connection open(SocketChannel channel, boolean initiator) {
+        var nonce = new byte[32];
+        random.nextBytes(nonce);
+        var connection = new Connection(channel, initiator, Base64.getEncoder().encodeToString(nonce));
+        connections.add(connection);
+        var challenge = newFrame("challenge");
+        challenge.put("nonce", connection.nonce);
+        connection.enqueue(challenge);
+        executor.execute(connection::writeFrames);
+        executor.execute(connection::readFrames);
+        return connection;
+    }
+
+    private void handleFrame(Connection connection, JsonObject frame) {
+        var type = frame.getString("type");
+        var claimedNode = frame.getString("node");
+        switch (type) {
+            case "challenge" -> acceptChallenge(connection, claimedNode, frame.getString("nonce"));
+            case "hello" -> acceptHello(connection, claimedNode, frame.getString("proof"));
+            default -> {
+                var sender = connection.remoteNodeId;
+                if (sender == null) {
+                    throw new SecurityException("Received " + type + " before the hello");
+                }
+                if (!sender.equals(claimedNode)) {
+                    throw new SecurityException("Node " + sender + " sent a frame claiming to be from " + claimedNode);
+                }
+                switch (type) {
+                    case "sessions" -> {
+                        var sessions = frame.getArray("sessions");
+                        for (var i = 0; i < sessions.length(); ++i) {
+                            listener.onRemoteSessionRegistered(sender, UUID.fromString(sessions.getString(i)));
+                        }
+                    }
+                    case "session-up" ->
+                            listener.onRemoteSessionRegistered(sender, UUID.fromString(frame.getString("session")));
+                    case "session-down" ->
+                            listener.onRemoteSessionUnregistered(sender, UUID.fromString(frame.getString("session")));
+                    case "envelope" ->
+                            listener.onEnvelope(sender, SignalingEnvelope.fromJson(frame.getObject("envelope")));
+                    default -> log.warn("Ignoring unknown cluster frame type {} from {}", type, sender);
+                }
+            }
+        }
+    }
+
+    private void acceptChallenge(Connection connection, String claimedNode, String nonce) {
+        if (nodeId.equals(claimedNode)) {
+            throw new SecurityException("Connected to self, check the configured peers");
+        }
+        if (connection.remoteNonce != null || claimedNode == null || nonce == null) {
+            throw new SecurityException("Unexpected challenge");
+        }
+        connection.remoteNonce = nonce;
+        connection.claimedNodeId = claimedNode;
+        // The dialing side proves itself first, the accepting side waits for that proof before sending its own
+        if (connection.initiator) {
+            sendHello(connection);
+        }
+    }
+
+    private void acceptHello(Connection connection, String claimedNode, String proof) {
+        if (connection.remoteNodeId != null || connection.remoteNonce == null
+                || !connection.claimedNodeId.equals(claimedNode)) {
+            throw new SecurityException("Unexpected hello");
+        }
+        var expected = connection.proof(connection.initiator ? ACCEPTOR : INITIATOR).getBytes(StandardCharsets.US_ASCII);
+        if (proof == null || !MessageDigest.isEqual(expected, proof.getBytes(StandardCharsets.US_ASCII))) {
+            throw new SecurityException("Node " + claimedNode + " did not prove it knows the cluster secret");
+        }
+        connection.remoteNodeId = claimedNode;
+        connectionsByNode.computeIfAbsent(claimedNode, node -> ConcurrentHashMap.newKeySet()).add(connection);
+        log.debug("Node {} authenticated node {}", nodeId, claimedNode);
+        if (!connection.initiator) {
+            sendHello(connection);
+        }
+        announceSessions(connection);
+    }
+
+    private void sendHello(Connection connection) {
+        var hello = newFrame("hello");
+        hello.put("proof", connection.proof(connection.initiator ? INITIATOR : ACCEPTOR));
+        connection.enqueue(hello);
+    }
+
+    // Sends the current sessions and from then on every change, so that each one reaches the peer exactly once
+    private void announceSessions(Connection connection) {
+        var frame = newFrame("sessions");
+        announcementLock.lock();
+        try {
+            var sessions = Json.createArray();
+            var i = 0;
+            for (var sessionId : localSessions) {
+                sessions.set(i++, sessionId.toString());
+            }
+            frame.put("sessions", sessions);
+            connection.enqueue(frame);
+            connection.announcing = true;
+        } finally {
+            announcementLock.unlock();
+        }
+    }
+
+    /**
+     * Proves that a node knows the secret, without sending the secret itself. The proof is bound to both challenges,
+     * both nodes and the role of the node giving it, so it cannot be replayed on another connection or reflected back.
+     */
+    static String proof(SecretKeySpec secret, String role, String initiatorNonce, String acceptorNonce,
+                        String initiatorNode, String acceptorNode) {
+        try {
+            var mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            for (var part : List.of(role, initiatorNonce, acceptorNonce, initiatorNode, acceptorNode)) {
+                var bytes = part.getBytes(StandardCharsets.UTF_8);
+                // Length-prefixed, so that no two different sets of parts have the same input
+                mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                mac.update(bytes);
+            }
+            return Base64.getEncoder().encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", ex);
+        }
+    }
+
+    private void connectionClosed(Connection connection) {
+        if (!connections.remove(connection) || connection.remoteNodeId == null) {
+            return;
+        }
+        var remaining = connectionsByNode.computeIfPresent(connection.remoteNodeId, (node, nodeConnections) -> {
+            nodeConnections.remove(connection);
+            return nodeConnections.isEmpty() ? null : nodeConnections;
+        });
+        if (remaining == null) {
+            log.info("Node {} lost connection to node {}", nodeId, connection.remoteNodeId);
+            listener.onNodeLeft(connection.remoteNodeId);
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final boolean initiator;
+        private final String nonce;
+        private final BlockingQueue<byte[]> outbound = new LinkedBlockingQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        // Set from the peer's challenge, only ever read by the connection's reader
+        private String remoteNonce;
+        private String claimedNodeId;
+        private volatile String remoteNodeId;
+        private volatile boolean announcing;
+        private volatile boolean closed;
+
+        private Connection(SocketChannel channel, boolean initiator, String nonce) {
+            this.channel = channel;
+            this.initiator = initiator;
+            this.nonce = nonce;
+        }
+
+        private String proof(String role) {
+            return initiator
+                    ? TcpSignalingTransport.proof(secret, role, nonce, remoteNonce, nodeId, claimedNodeId)
+                    : TcpSignalingTransport.proof(secret, role, remoteNonce, nonce, claimedNodeId, nodeId);
+        }
+
+        private boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        private void enqueue(JsonObject frame) {
+            if (closed) {
+                return;
+            }
+            var bytes = frame.toJson().getBytes(StandardCharsets.UTF_8);
+            if (pendingBytes.addAndGet(bytes.length) > MAX_PENDING_BYTES) {
+                log.warn("Closing cluster connection {}, it has stopped reading", this);
+                close();
+                return;
+            }
+            outbound.add(bytes);
+        }
+
+        private void writeFrames() {
+            try {
+                while (!closed) {
+                    var bytes = outbound.take();
+                    if (bytes == CLOSE) {
+                        return;
+                    }
+                    pendingBytes.addAndGet(-bytes.length);
+                    var buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            } catch (IOException ex) {
+                log.debug("Could not write to cluster connection {}: {}", this, ex.getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void readFrames() {
+            var header = ByteBuffer.allocate(Integer.BYTES);
+            try {
+                while (running && !closed) {
+                    readFully(header.clear());
+                    var length = header.flip().getInt();
+                    if (length < 0 || length > MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid frame length " + length);
+                    }
+                    var body = ByteBuffer.allocate(length);
+                    readFully(body);
+                    try {
+                        handleFrame(this, Json.parse(new String(body.array(), StandardCharsets.UTF_8)));
+                    } catch (SecurityException ex) {
+                        log.warn("Closing cluster connection {}: {}", this, ex.getMessage());
+                        return;
+                    } catch (RuntimeException ex) {
+                        log.warn("Could not handle cluster frame from {}", remoteNodeId, ex);
+                    }
+                }
+            } catch (IOException ex) {
+                log.debug("Cluster connection {} closed: {}", this, ex.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            outbound.clear();
+            outbound.add(CLOSE);
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Could not close cluster connection {}", this, ex);
+            }
+            connectionClosed(this);
+        }
+
+        @Override
+        public String toString() {
+            return "Connection{%s}".formatted(remoteNodeId);
+        }
+    }
+}
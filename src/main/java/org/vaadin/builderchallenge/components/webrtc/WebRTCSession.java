@@ -2,7 +2,11 @@ package org.vaadin.builderchallenge.components.webrtc;
 
 import elemental.json.JsonValue;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface WebRTCSession {
 
@@ -10,12 +14,27 @@ public interface WebRTCSession {
 
     void invite(WebRTCSession target);
 
+    default void inviteAll(Collection<? extends WebRTCSession> targets) {
+        targets.forEach(this::invite);
+    }
+
     void handleInvitation(WebRTCSession source, JsonValue message);
 
     void handleInvitationAnswer(WebRTCSession source, JsonValue message);
 
     void handleNewICECandidate(WebRTCSession source, JsonValue message);
 
+    default void handleNewICECandidates(List<SignalingMessage> messages) {
+        messages.forEach(message -> handleNewICECandidate(message.source(), message.payload()));
+    }
+
+    /**
+     * Called when the source wants to receive this session's stream in the given quality.
+     */
+    default void handleQualityRequest(WebRTCSession source, StreamQuality quality) {
+        // NOP by default
+    }
+
     void setAttribute(String name, Object value);
 
     default <T> void setAttribute(Class<T> type, T value) {
@@ -24,6 +43,17 @@ public interface WebRTCSession {
 
     <T> T getAttribute(String name, T defaultValue);
 
+    Map<String, Object> getAttributes();
+
+    /**
+     * Runs the action with the current attributes while none of them can change. The {@link WebRTCSessionManager}
+     * indexes and unindexes sessions this way, so sessions that report their changes through
+     * {@link WebRTCSessionManager#attributeChanged} must report them under the same lock.
+     */
+    default void withAttributes(Consumer<Map<String, Object>> action) {
+        action.accept(getAttributes());
+    }
+
     default <T> T getAttribute(Class<T> type, T defaultValue) {
         return getAttribute(type.getName(), defaultValue);
     }
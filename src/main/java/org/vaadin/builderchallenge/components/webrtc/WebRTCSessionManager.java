@@ -1,75 +1,329 @@
 package org.vaadin.builderchallenge.components.webrtc;
 
+import elemental.json.JsonArray;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
+import static java.util.Objects.requireNonNull;
+
 @Service
 public class WebRTCSessionManager {
 
     private static final Logger log = LoggerFactory.getLogger(WebRTCSessionManager.class);
-    private final Map<UUID, WebRTCSession> sessions = new HashMap<>();
+    private final Map<UUID, WebRTCSession> sessions = new ConcurrentHashMap<>();
+    private final Set<UUID> presenters = ConcurrentHashMap.newKeySet();
+    private final SessionAttributeIndex attributeIndex = new SessionAttributeIndex();
+    // Only joins and presenter changes are serialized, so that two sessions joining at the same time never miss or
+    // double-invite each other. Lookups go straight to the concurrent map.
+    private final Object joinLock = new Object();
+    private final InviteScheduler inviteScheduler;
+    private final ICECandidateRelay iceCandidateRelay;
+    private final SignalingDispatcher signalingDispatcher;
+    private final SignalingTransport signalingTransport;
+    private final MediaRelay mediaRelay;
+    private final JoinTopology joinTopology;
+    private final int fullMeshLimit;
+    private final int maxPresenters;
+
+    public WebRTCSessionManager(InviteScheduler inviteScheduler,
+                                ICECandidateRelay iceCandidateRelay,
+                                SignalingDispatcher signalingDispatcher,
+                                SignalingTransport signalingTransport,
+                                ObjectProvider<MediaRelay> mediaRelay,
+                                @Value("${webrtc.join.topology:AUTO}") JoinTopology joinTopology,
+                                @Value("${webrtc.join.full-mesh-limit:8}") int fullMeshLimit,
+                                @Value("${webrtc.join.max-presenters:4}") int maxPresenters) {
+        this.inviteScheduler = requireNonNull(inviteScheduler, "inviteScheduler must not be null");
+        this.iceCandidateRelay = requireNonNull(iceCandidateRelay, "iceCandidateRelay must not be null");
+        this.signalingDispatcher = requireNonNull(signalingDispatcher, "signalingDispatcher must not be null");
+        this.signalingTransport = requireNonNull(signalingTransport, "signalingTransport must not be null");
+        this.joinTopology = requireNonNull(joinTopology, "joinTopology must not be null");
+        this.fullMeshLimit = fullMeshLimit;
+        this.maxPresenters = maxPresenters;
+        if (joinTopology == JoinTopology.SELECTIVE_FORWARDING) {
+            this.mediaRelay = mediaRelay.getIfAvailable();
+            if (this.mediaRelay == null) {
+                throw new IllegalStateException("The selective forwarding topology requires a MediaRelay bean");
+            }
+        } else {
+            this.mediaRelay = null;
+        }
+    }
+
+    @PostConstruct
+    void startTransport() {
+        signalingTransport.start(new TransportListener());
+    }
+
+    @PreDestroy
+    void stopTransport() {
+        signalingTransport.stop();
+    }
 
     public void register(WebRTCSession session) {
         log.debug("Registering session {}", session);
-        Set<WebRTCSession> sessionsToInvite;
-        synchronized (this) {
+        List<WebRTCSession> existingSessions;
+        synchronized (joinLock) {
+            existingSessions = List.copyOf(sessions.values());
             if (sessions.containsKey(session.id())) {
                 throw new IllegalArgumentException("Session ID already exists");
             }
-            sessionsToInvite = Set.copyOf(sessions.values());
-            sessions.put(session.id(), session);
+            // Indexed before it becomes visible, under the lock its attribute changes are reported with, so that a
+            // change is either part of the indexed attributes or reported once the session is registered
+            session.withAttributes(attributes -> {
+                attributeIndex.addAll(session, attributes);
+                sessions.put(session.id(), session);
+            });
         }
-        // TODO This only works for a small number of sessions. For larger numbers, we need to be smarter
-        sessionsToInvite.forEach(session::invite);
+        signalingTransport.publishSessionRegistered(session.id());
+        var sessionsToInvite = switch (topologyForRoomSize(existingSessions.size() + 1)) {
+            case STAGE -> existingSessions.stream().filter(this::isPresenter).toList();
+            case SELECTIVE_FORWARDING -> {
+                mediaRelay.publisherJoined(session);
+                yield List.<WebRTCSession>of(mediaRelay);
+            }
+            default -> existingSessions;
+        };
+        log.debug("{} will invite {} of {} sessions", session, sessionsToInvite.size(), existingSessions.size());
+        inviteScheduler.schedule(session, sessionsToInvite);
     }
 
     public void unregister(WebRTCSession session) {
         log.debug("Unregistering session {}", session); // Client side will take cae of hanging up stuff
-        synchronized (this) {
-            sessions.remove(session.id());
+        if (remove(session)) {
+            signalingTransport.publishSessionUnregistered(session.id());
+            if (mediaRelay != null) {
+                mediaRelay.publisherLeft(session);
+            }
+            forget(session);
         }
     }
 
+    // Unindexes the session under its attribute lock, the counterpart of register
+    private boolean remove(WebRTCSession session) {
+        var removed = new boolean[1];
+        session.withAttributes(attributes -> {
+            removed[0] = sessions.remove(session.id(), session);
+            if (removed[0]) {
+                attributeIndex.removeAll(session, attributes);
+            }
+        });
+        return removed[0];
+    }
+
+    private void forget(WebRTCSession session) {
+        presenters.remove(session.id());
+        inviteScheduler.cancel(session);
+        iceCandidateRelay.discard(session);
+        signalingDispatcher.close(session);
+    }
+
+    /**
+     * Designates the given session as a presenter, or revokes the designation. A new presenter invites every session
+     * it is not yet connected to. Revoking keeps the existing connections open.
+     *
+     * @throws IllegalStateException if the session is not registered, or the maximum number of presenters is reached
+     */
+    public void setPresenter(WebRTCSession session, boolean presenter) {
+        List<WebRTCSession> sessionsToInvite;
+        synchronized (joinLock) {
+            if (!presenter) {
+                presenters.remove(session.id());
+                return;
+            }
+            if (sessions.get(session.id()) != session) {
+                throw new IllegalStateException("Session is not registered");
+            }
+            if (presenters.contains(session.id())) {
+                return;
+            }
+            if (presenters.size() >= maxPresenters) {
+                throw new IllegalStateException("There can be at most %d presenters".formatted(maxPresenters));
+            }
+            presenters.add(session.id());
+            sessionsToInvite = sessions.values().stream().filter(s -> s != session).toList();
+        }
+        log.debug("{} became a presenter", session);
+        // The client ignores invitations to sessions it is already connected to
+        inviteScheduler.schedule(session, sessionsToInvite);
+    }
+
+    /**
+     * Returns the ID of the media relay every session connects to, if the selective forwarding topology is in use.
+     */
+    public Optional<UUID> mediaRelayId() {
+        return Optional.ofNullable(mediaRelay).map(WebRTCSession::id);
+    }
+
+    /**
+     * Tells the media relay, if there is one, whether the subscriber currently wants to receive the publisher's
+     * stream. Without a relay, the clients pause and resume streams between themselves.
+     */
+    public void setSubscribed(WebRTCSession subscriber, UUID publisherId, boolean subscribed) {
+        if (mediaRelay != null && !publisherId.equals(mediaRelay.id())) {
+            mediaRelay.setSubscribed(subscriber, publisherId, subscribed);
+        }
+    }
+
+    /**
+     * Asks for the publisher's stream to be sent to the subscriber in the given quality. With a media relay this
+     * selects a simulcast layer, otherwise the publisher adjusts the encoding of its connection to the subscriber.
+     */
+    public void requestQuality(WebRTCSession subscriber, UUID publisherId, StreamQuality quality) {
+        if (mediaRelay != null) {
+            mediaRelay.setQuality(subscriber, publisherId, quality);
+        } else {
+            getSession(publisherId).ifPresent(publisher -> signalingDispatcher.dispatch(publisher,
+                    () -> publisher.handleQualityRequest(subscriber, quality)));
+        }
+    }
+
+    public boolean isPresenter(WebRTCSession session) {
+        return presenters.contains(session.id());
+    }
+
+    public Set<UUID> presenterIds() {
+        return Set.copyOf(presenters);
+    }
+
     public void sendNewICECandidate(WebRTCSession source, UUID recipient, JsonValue message) {
         validateMessageFormat(source, recipient, message);
-        getSession(recipient).ifPresent(s -> s.handleNewICECandidate(source, message));
+        signalingPeer(recipient).ifPresent(s -> iceCandidateRelay.relay(source, s, message));
     }
 
     public void sendVideoAnswer(WebRTCSession source, UUID recipient, JsonValue message) {
         validateMessageFormat(source, recipient, message);
-        getSession(recipient).ifPresent(s -> s.handleInvitationAnswer(source, message));
+        signalingPeer(recipient).ifPresent(s -> signalingDispatcher.dispatch(s, () -> s.handleInvitationAnswer(source, message)));
     }
 
     public void sendVideoOffer(WebRTCSession source, UUID recipient, JsonValue message) {
         validateMessageFormat(source, recipient, message);
-        getSession(recipient).ifPresent(s -> s.handleInvitation(source, message));
+        signalingPeer(recipient).ifPresent(s -> signalingDispatcher.dispatch(s, () -> s.handleInvitation(source, message)));
     }
 
-    public Optional<WebRTCSession> getSession(UUID id) {
-        synchronized (this) {
-            return Optional.ofNullable(sessions.get(id));
+    // The media relay is not a participant, so it is left out of the registry and only reachable by signaling
+    private Optional<WebRTCSession> signalingPeer(UUID id) {
+        if (mediaRelay != null && mediaRelay.id().equals(id)) {
+            return Optional.of(mediaRelay);
         }
+        return getSession(id);
+    }
+
+    public SignalingStats signalingStats() {
+        return signalingDispatcher.stats();
+    }
+
+    public Optional<WebRTCSession> getSession(UUID id) {
+        return Optional.ofNullable(sessions.get(id));
     }
 
     public Optional<WebRTCSession> findSession(Predicate<? super WebRTCSession> predicate) {
-        synchronized (this) {
-            return sessions.values().stream().filter(predicate).findFirst();
+        return sessions.values().stream().filter(predicate).findFirst();
+    }
+
+    /**
+     * Returns every registered session whose attribute has the given value, without scanning all sessions.
+     */
+    public Set<WebRTCSession> findSessions(String attributeName, Object value) {
+        return attributeIndex.find(attributeName, value);
+    }
+
+    public <T> Set<WebRTCSession> findSessions(Class<T> type, T value) {
+        return findSessions(type.getName(), value);
+    }
+
+    /**
+     * Called by sessions when one of their attributes changes, to keep the attribute index up to date.
+     */
+    public void attributeChanged(WebRTCSession session, String name, Object oldValue, Object newValue) {
+        if (sessions.get(session.id()) == session) {
+            attributeIndex.update(session, name, oldValue, newValue);
         }
     }
 
     public Set<UUID> sessionIds() {
-        synchronized (this) {
-            return Set.copyOf(sessions.keySet());
+        return Set.copyOf(sessions.keySet());
+    }
+
+    private JoinTopology topologyForRoomSize(int roomSize) {
+        if (joinTopology == JoinTopology.AUTO) {
+            return roomSize <= fullMeshLimit ? JoinTopology.FULL_MESH : JoinTopology.STAGE;
+        }
+        return joinTopology;
+    }
+
+    private void deliverEnvelope(String nodeId, SignalingEnvelope envelope) {
+        var recipient = sessions.get(envelope.recipient());
+        if (recipient == null || recipient instanceof RemoteWebRTCSession) {
+            log.debug("Dropping {} from node {} for unknown session {}", envelope.type(), nodeId, envelope.recipient());
+            return;
+        }
+        // A node may only speak for its own sessions, which it has announced before signaling from them
+        if (!(sessions.get(envelope.source()) instanceof RemoteWebRTCSession source) || !source.nodeId().equals(nodeId)) {
+            log.warn("Dropping {} from node {} for session {} it does not own", envelope.type(), nodeId, envelope.source());
+            return;
+        }
+        var payload = envelope.payload();
+        try {
+            validateEnvelope(source, recipient.id(), envelope.type(), payload);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Dropping malformed {} from node {}: {}", envelope.type(), nodeId, ex.getMessage());
+            return;
+        }
+        switch (envelope.type()) {
+            case INVITE -> signalingDispatcher.dispatch(recipient, () -> recipient.invite(source));
+            case VIDEO_OFFER -> signalingDispatcher.dispatch(recipient, () -> recipient.handleInvitation(source, payload));
+            case VIDEO_ANSWER ->
+                    signalingDispatcher.dispatch(recipient, () -> recipient.handleInvitationAnswer(source, payload));
+            case NEW_ICE_CANDIDATES -> {
+                var array = (JsonArray) payload;
+                var candidates = new ArrayList<SignalingMessage>();
+                for (var i = 0; i < array.length(); ++i) {
+                    candidates.add(new SignalingMessage(source, array.get(i)));
+                }
+                signalingDispatcher.dispatch(recipient, () -> recipient.handleNewICECandidates(candidates));
+            }
+            case QUALITY_REQUEST -> {
+                var quality = StreamQuality.valueOf(payload.asString());
+                signalingDispatcher.dispatch(recipient, () -> recipient.handleQualityRequest(source, quality));
+            }
+        }
+    }
+
+    private static void validateEnvelope(WebRTCSession source, UUID recipient, SignalingEnvelope.Type type, JsonValue payload) {
+        switch (type) {
+            case INVITE -> {
+            }
+            case VIDEO_OFFER, VIDEO_ANSWER -> validateMessageFormat(source, recipient, payload);
+            case NEW_ICE_CANDIDATES -> {
+                if (!(payload instanceof JsonArray array)) {
+                    throw new IllegalArgumentException("ICE candidates are not a JSON array");
+                }
+                for (var i = 0; i < array.length(); ++i) {
+                    validateMessageFormat(source, recipient, array.get(i));
+                }
+            }
+            case QUALITY_REQUEST -> {
+                if (payload == null) {
+                    throw new IllegalArgumentException("Quality request has no quality");
+                }
+                StreamQuality.valueOf(payload.asString());
+            }
         }
     }
 
-    private void validateMessageFormat(WebRTCSession source, UUID recipient, JsonValue message) {
+    static void validateMessageFormat(WebRTCSession source, UUID recipient, JsonValue message) {
         if (message instanceof JsonObject msgObj) {
             var sender = msgObj.getString("sender");
             var target = msgObj.getString("target");
@@ -83,4 +337,44 @@ public class WebRTCSessionManager {
             throw new IllegalArgumentException("Message is not a JSON object");
         }
     }
+
+    private final class TransportListener implements SignalingTransport.Listener {
+
+        @Override
+        public void onRemoteSessionRegistered(String nodeId, UUID sessionId) {
+            // Remote sessions are invited by the session that joins, never the other way around
+            synchronized (joinLock) {
+                var remote = new RemoteWebRTCSession(sessionId, nodeId, signalingTransport);
+                if (sessions.putIfAbsent(sessionId, remote) == null) {
+                    log.debug("Session {} registered on node {}", sessionId, nodeId);
+                }
+            }
+        }
+
+        @Override
+        public void onRemoteSessionUnregistered(String nodeId, UUID sessionId) {
+            if (sessions.get(sessionId) instanceof RemoteWebRTCSession remote && remove(remote)) {
+                log.debug("Session {} unregistered on node {}", sessionId, nodeId);
+                forget(remote);
+            }
+        }
+
+        @Override
+        public void onNodeLeft(String nodeId) {
+            log.debug("Node {} left, dropping its sessions", nodeId);
+            sessions.values().stream()
+                    .filter(session -> session instanceof RemoteWebRTCSession remote && remote.nodeId().equals(nodeId))
+                    .toList()
+                    .forEach(session -> {
+                        if (remove(session)) {
+                            forget(session);
+                        }
+                    });
+        }
+
+        @Override
+        public void onEnvelope(String nodeId, SignalingEnvelope envelope) {
+            deliverEnvelope(nodeId, envelope);
+        }
+    }
 }
@@ -3,6 +3,7 @@ package org.vaadin.builderchallenge.components.webrtc;
 import com.vaadin.flow.component.*;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.shared.Registration;
+import elemental.json.Json;
 import elemental.json.JsonArray;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
@@ -10,7 +11,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -26,11 +29,18 @@ public class WebRTCSupport extends Component implements WebRTCSession {
     private RemoteStreamAddedHandler remoteStreamAddedHandler;
     private RemoteStreamRemovedHandler remoteStreamRemovedHandler;
     private final Map<UUID, StreamViewer> remoteVideo = new HashMap<>();
+    private final Map<UUID, Registration> remoteVideoListeners = new HashMap<>();
     private final Map<String, Object> attributes = new HashMap<>();
+    private Duration streamReleaseGracePeriod = Duration.ofSeconds(5);
 
     public WebRTCSupport(WebRTCSessionManager webRTCSessionManager) {
         this.webRTCSessionManager = requireNonNull(webRTCSessionManager, "webRTCSessionManager must not be null");
         getElement().setProperty("selfId", selfId.toString());
+        getElement().setProperty("streamReleaseGracePeriod", streamReleaseGracePeriod.toMillis());
+        webRTCSessionManager.mediaRelayId().ifPresent(relayId -> {
+            getElement().setProperty("relayId", relayId.toString());
+            getElement().setPropertyJson("simulcastLayers", simulcastLayers());
+        });
     }
 
     public void setSelfVideo(StreamViewer selfVideo) {
@@ -42,6 +52,16 @@ public class WebRTCSupport extends Component implements WebRTCSession {
         return Optional.ofNullable(remoteVideo.get(sessionId));
     }
 
+    /**
+     * Sets how long a remote stream keeps flowing after its viewer has been detached. Remote streams are only received
+     * while their viewer is attached, and are paused once the grace period is over.
+     */
+    public void setStreamReleaseGracePeriod(Duration streamReleaseGracePeriod) {
+        requireNonNull(streamReleaseGracePeriod, "streamReleaseGracePeriod must not be null");
+        this.streamReleaseGracePeriod = streamReleaseGracePeriod;
+        getElement().setProperty("streamReleaseGracePeriod", streamReleaseGracePeriod.toMillis());
+    }
+
     public void setRemoteStreamAddedHandler(RemoteStreamAddedHandler remoteStreamAddedHandler) {
         this.remoteStreamAddedHandler = remoteStreamAddedHandler;
     }
@@ -95,25 +115,59 @@ public class WebRTCSupport extends Component implements WebRTCSession {
         if (viewer == null && remoteStreamAddedHandler != null) {
             var newViewer = remoteStreamAddedHandler.onRemoteStreamAdded(id);
             remoteVideo.put(id, newViewer);
-            newViewer.addAttachListener(event -> { // TODO Clean up attach listener
-                getElement().callJsFunction("showRemoteStream", sessionId, newViewer.getElement()).then(
-                        result -> log.trace("{} is showing remote stream {}", this, sessionId),
-                        error -> log.trace("{} got an error showing remote stream {}: {}", this, sessionId, error)
-                );
+            var attachRegistration = newViewer.addAttachListener(event -> subscribe(id, newViewer));
+            var detachRegistration = newViewer.addDetachListener(event -> release(id));
+            var qualityRegistration = newViewer.addQualityChangeListener(
+                    event -> webRTCSessionManager.requestQuality(this, id, event.getQuality()));
+            remoteVideoListeners.put(id, () -> {
+                attachRegistration.remove();
+                detachRegistration.remove();
+                qualityRegistration.remove();
             });
+            if (newViewer.isAttached()) {
+                subscribe(id, newViewer);
+            }
         } else if (viewer != null && viewer.isAttached()) {
-            getElement().callJsFunction("showRemoteStream", sessionId, viewer.getElement()).then(
-                    result -> log.trace("{} is showing remote stream {}", this, sessionId),
-                    error -> log.trace("{} got an error showing remote stream {}: {}", this, sessionId, error)
-            );
+            subscribe(id, viewer);
         }
     }
 
+    @ClientCallable
+    protected void remoteStreamReleased(String sessionId) {
+        log.debug("Remote stream {} released by {}", sessionId, this);
+        webRTCSessionManager.setSubscribed(this, UUID.fromString(sessionId), false);
+    }
+
+    private void subscribe(UUID sessionId, StreamViewer viewer) {
+        webRTCSessionManager.setSubscribed(this, sessionId, true);
+        webRTCSessionManager.requestQuality(this, sessionId, viewer.getQuality());
+        getElement().callJsFunction("showRemoteStream", sessionId.toString(), viewer.getElement()).then(
+                result -> log.trace("{} is showing remote stream {}", this, sessionId),
+                error -> log.trace("{} got an error showing remote stream {}: {}", this, sessionId, error)
+        );
+        getElement().callJsFunction("resumeRemoteStream", sessionId.toString()).then(
+                result -> log.trace("{} resumed remote stream {}", this, sessionId),
+                error -> log.trace("{} got an error resuming remote stream {}: {}", this, sessionId, error)
+        );
+    }
+
+    private void release(UUID sessionId) {
+        var gracePeriodMs = (int) streamReleaseGracePeriod.toMillis();
+        getElement().callJsFunction("releaseRemoteStream", sessionId.toString(), gracePeriodMs).then(
+                result -> log.trace("{} is releasing remote stream {}", this, sessionId),
+                error -> log.trace("{} got an error releasing remote stream {}: {}", this, sessionId, error)
+        );
+    }
+
     @ClientCallable
     protected void remoteStreamRemoved(String sessionId) {
         log.debug("Remote stream {} removed from {}", sessionId, this);
         var id = UUID.fromString(sessionId);
         var viewer = remoteVideo.remove(id);
+        var listeners = remoteVideoListeners.remove(id);
+        if (listeners != null) {
+            listeners.remove();
+        }
         if (viewer != null) {
             if (remoteStreamRemovedHandler != null) {
                 remoteStreamRemovedHandler.onRemoteStreamRemoved(id, viewer);
@@ -167,13 +221,20 @@ public class WebRTCSupport extends Component implements WebRTCSession {
 
     @Override
     public void invite(WebRTCSession target) {
-        getUI().ifPresent(ui -> ui.access(() -> {
-            log.trace("{} invites {}", this, target);
-            getElement().callJsFunction("invite", target.id().toString()).then(
-                    result -> log.trace("{} sent invitation to {}", this, target),
-                    error -> log.trace("{} got an error sending invitation to {}: {}", this, target, error)
-            );
-        }));
+        getUI().ifPresent(ui -> ui.access(() -> sendInvitation(target)));
+    }
+
+    @Override
+    public void inviteAll(Collection<? extends WebRTCSession> targets) {
+        getUI().ifPresent(ui -> ui.access(() -> targets.forEach(this::sendInvitation)));
+    }
+
+    private void sendInvitation(WebRTCSession target) {
+        log.trace("{} invites {}", this, target);
+        getElement().callJsFunction("invite", target.id().toString()).then(
+                result -> log.trace("{} sent invitation to {}", this, target),
+                error -> log.trace("{} got an error sending invitation to {}: {}", this, target, error)
+        );
     }
 
     @Override
@@ -209,6 +270,47 @@ public class WebRTCSupport extends Component implements WebRTCSession {
         }));
     }
 
+    @Override
+    public void handleNewICECandidates(List<SignalingMessage> messages) {
+        getUI().ifPresent(ui -> ui.access(() -> {
+            log.trace("{} handles {} new ICE candidates", this, messages.size());
+            var candidates = Json.createArray();
+            for (var i = 0; i < messages.size(); ++i) {
+                candidates.set(i, messages.get(i).payload());
+            }
+            getElement().callJsFunction("handleNewICECandidates", candidates).then(
+                    result -> log.trace("{} handled {} new ICE candidates", this, messages.size()),
+                    error -> log.trace("{} got an error handling {} new ICE candidates: {}", this, messages.size(), error)
+            );
+        }));
+    }
+
+    @Override
+    public void handleQualityRequest(WebRTCSession source, StreamQuality quality) {
+        getUI().ifPresent(ui -> ui.access(() -> {
+            log.trace("{} sends {} quality to {}", this, quality, source);
+            getElement().callJsFunction("setSendQuality", source.id().toString(), quality.scaleResolutionDownBy(),
+                    quality.maxBitrate()).then(
+                    result -> log.trace("{} changed the quality sent to {}", this, source),
+                    error -> log.trace("{} got an error changing the quality sent to {}: {}", this, source, error)
+            );
+        }));
+    }
+
+    private static JsonArray simulcastLayers() {
+        var layers = Json.createArray();
+        for (var quality : StreamQuality.values()) {
+            var layer = Json.createObject();
+            layer.put("rid", quality.rid());
+            layer.put("scaleResolutionDownBy", quality.scaleResolutionDownBy());
+            if (quality.maxBitrate() > 0) {
+                layer.put("maxBitrate", quality.maxBitrate());
+            }
+            layers.set(quality.ordinal(), layer);
+        }
+        return layers;
+    }
+
     @FunctionalInterface
     public interface MediaDeviceListChangeListener extends Serializable {
         void onMediaDevicesChanged(WebRTCSupport sender);
@@ -234,8 +336,27 @@ public class WebRTCSupport extends Component implements WebRTCSession {
 
     @Override
     public void setAttribute(String name, Object value) {
+        // The index is updated under the same lock that registering and unregistering index the session with, so
+        // they see either the old value or the new one and never leave a stale index entry behind
+        synchronized (attributes) {
+            var oldValue = value == null ? attributes.remove(name) : attributes.put(name, value);
+            if (!Objects.equals(oldValue, value)) {
+                webRTCSessionManager.attributeChanged(this, name, oldValue, value);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        synchronized (attributes) {
+            return Map.copyOf(attributes);
+        }
+    }
+
+    @Override
+    public void withAttributes(Consumer<Map<String, Object>> action) {
         synchronized (attributes) {
-            attributes.put(name, value);
+            action.accept(Map.copyOf(attributes));
         }
     }
 
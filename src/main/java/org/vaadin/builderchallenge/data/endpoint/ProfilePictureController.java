@@ -0,0 +1,127 @@
+package org.vaadin.builderchallenge.data.endpoint;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.vaadin.builderchallenge.data.service.AvatarSize;
+import org.vaadin.builderchallenge.data.service.ProfilePictureInfo;
+import org.vaadin.builderchallenge.data.service.ProfilePictureService;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Serves profile pictures to signed in users, either as uploaded or as an {@link AvatarSize avatar thumbnail}. Browsers
+ * may reuse a picture for the configured time, after which they revalidate it with its entity tag.
+ */
+@RestController
+public class ProfilePictureController {
+
+    private final ProfilePictureService pictures;
+    private final CacheControl cacheControl;
+
+    public ProfilePictureController(ProfilePictureService pictures,
+            @Value("${users.avatars.max-age-seconds:300}") long maxAgeSeconds) {
+        if (maxAgeSeconds < 0) {
+            throw new IllegalArgumentException("maxAgeSeconds must not be negative");
+        }
+        this.pictures = pictures;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePrivate();
+    }
+
+    /**
+     * Returns the address of the picture of the user, relative to the application root.
+     */
+    public static String url(Long userId) {
+        return "avatars/" + userId;
+    }
+
+    /**
+     * Returns the address of the thumbnail of the picture of the user, relative to the application root.
+     */
+    public static String url(Long userId, AvatarSize size) {
+        return url(userId) + "?size=" + size.param();
+    }
+
+    @GetMapping("/avatars/{userId}")
+    public ResponseEntity<StreamingResponseBody> get(@PathVariable Long userId,
+            @RequestParam(name = "size", required = false) String sizeParam,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        AvatarSize size = null;
+        if (sizeParam != null) {
+            var maybeSize = AvatarSize.fromParam(sizeParam);
+            if (maybeSize.isEmpty()) {
+                return ResponseEntity.badRequest().build();
+            }
+            size = maybeSize.get();
+        }
+        var maybeInfo = pictures.getInfo(userId);
+        if (maybeInfo.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ProfilePictureInfo info = maybeInfo.get();
+        return size == null ? original(info, ifNoneMatch) : thumbnail(info, size, ifNoneMatch);
+    }
+
+    private ResponseEntity<StreamingResponseBody> original(ProfilePictureInfo info, String ifNoneMatch) {
+        if (matches(ifNoneMatch, info.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(info.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(info.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.parseMediaType(info.contentType()))
+                .contentLength(info.size())
+                .body(out -> {
+                    if (!pictures.writeTo(info, out)) {
+                        // Replaced while the headers were sent, the client sees a short body and asks again
+                        throw new IOException(
+                                "Profile picture of user " + info.userId() + " changed while being sent");
+                    }
+                });
+    }
+
+    private ResponseEntity<StreamingResponseBody> thumbnail(ProfilePictureInfo info, AvatarSize size,
+            String ifNoneMatch) {
+        String etag = info.etag(size);
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        var maybeThumbnail = pictures.getThumbnail(info, size);
+        if (maybeThumbnail.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        byte[] thumbnail = maybeThumbnail.get();
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.IMAGE_JPEG)
+                .contentLength(thumbnail.length)
+                .body(out -> out.write(thumbnail));
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package org.vaadin.builderchallenge.data.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+/**
+ * The picture of a {@link User}, kept in its own table so that loading a user never drags the image along.
+ */
+@Entity
+@Table(name = "profile_picture")
+public class ProfilePicture {
+
+    /**
+     * The largest picture that can be stored, in bytes.
+     */
+    public static final int MAX_SIZE = 1000000;
+
+    @Id
+    private Long userId;
+    @Version
+    private int version;
+    private String contentType;
+    @Lob
+    @Column(length = MAX_SIZE)
+    private byte[] data;
+
+    public Long getUserId() {
+        return userId;
+    }
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    public int getVersion() {
+        return version;
+    }
+    public String getContentType() {
+        return contentType;
+    }
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    public byte[] getData() {
+        return data;
+    }
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+}
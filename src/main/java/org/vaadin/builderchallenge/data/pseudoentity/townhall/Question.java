@@ -1,9 +1,10 @@
 package org.vaadin.builderchallenge.data.pseudoentity.townhall;
 
 import com.vaadin.collaborationengine.UserInfo;
-import lombok.Setter;
+import lombok.AccessLevel;
 import org.vaadin.builderchallenge.data.entity.User;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -12,29 +13,39 @@ import java.util.UUID;
 import lombok.Getter;
 
 @Getter
-@Setter
 public class Question {
-	private static int lastId = 0;
-	private final Integer id;
+	private final Long id;
 	private final UserInfo authorInfo;
 	private final String message;
+	@Getter(AccessLevel.NONE)
 	private final Map<String, Vote> votes = new HashMap<>();
+	// Maintained by setVote and removeVote, so readers never re-scan the votes
+	private int score;
+	@Getter(AccessLevel.NONE)
+	private final int[] voteCounts = new int[Vote.Value.values().length];
 
-	// Jackson converter cannot instantiate instance without finding a default constructor. There we go
-	public Question() {
-		id = null;
-		authorInfo = null;
-		message = null;
-	}
-	public Question(UserInfo authorInfo, String message) {
-		this.id = ++lastId;
+	/**
+	 * @param id a unique id, see {@link org.vaadin.builderchallenge.data.service.townhall.QuestionIdGenerator}
+	 */
+	public Question(Long id, UserInfo authorInfo, String message) {
+		this.id = Objects.requireNonNull(id, "id must not be null");
 		this.authorInfo = authorInfo;
 		this.message = message;
 	}
 
+	public Question(Question other) {
+		this.id = other.id;
+		this.authorInfo = other.authorInfo;
+		this.message = other.message;
+		this.votes.putAll(other.votes);
+		this.score = other.score;
+		System.arraycopy(other.voteCounts, 0, this.voteCounts, 0, voteCounts.length);
+	}
+
 	public void setVote(UserInfo originator, Vote value) {
 		if (value != null) {
-			votes.put(originator.getId(), value);
+			count(votes.put(originator.getId(), value), -1);
+			count(value, 1);
 		}
 	}
 
@@ -51,15 +62,33 @@ public class Question {
 		return Objects.hash(id);
 	}
 
+	/**
+	 * Returns the votes by voter id. Votes are changed with {@link #setVote} and {@link #removeVote}, which keep the
+	 * score and the vote counts up to date.
+	 */
+	public Map<String, Vote> getVotes() {
+		return Collections.unmodifiableMap(votes);
+	}
+
 	public int getScore() {
-		return votes.values().stream().map(value -> value.getValue().getIntVal()).reduce(Integer::sum).orElse(0);
+		return score;
 	}
 
-	void setScore(int score) {
-		// didn't find how to configure jackson's ObjectMapper to ignore 'score'
+	/**
+	 * Returns how many votes of the given value this question has.
+	 */
+	public int getVoteCount(Vote.Value value) {
+		return voteCounts[value.ordinal()];
 	}
 
 	public void removeVote(Vote vote) {
-		votes.remove(vote.getOriginatorName());
+		count(votes.remove(vote.getOriginatorName()), -1);
+	}
+
+	private void count(Vote vote, int delta) {
+		if (vote != null && vote.getValue() != null) {
+			score += delta * vote.getValue().getIntVal();
+			voteCounts[vote.getValue().ordinal()] += delta;
+		}
 	}
 }
@@ -0,0 +1,41 @@
+package org.vaadin.builderchallenge.data.service;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * The fixed sizes profile pictures are scaled down to for avatars. Each is twice the size of the matching avatar theme
+ * so that they stay sharp on high density screens.
+ */
+public enum AvatarSize {
+
+    XSMALL(64),
+    SMALL(96),
+    MEDIUM(128);
+
+    private final int pixels;
+
+    AvatarSize(int pixels) {
+        this.pixels = pixels;
+    }
+
+    /**
+     * Width and height of the thumbnail.
+     */
+    public int pixels() {
+        return pixels;
+    }
+
+    public String param() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static Optional<AvatarSize> fromParam(String param) {
+        for (AvatarSize size : values()) {
+            if (size.param().equals(param)) {
+                return Optional.of(size);
+            }
+        }
+        return Optional.empty();
+    }
+}
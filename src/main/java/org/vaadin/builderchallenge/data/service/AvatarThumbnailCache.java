@@ -0,0 +1,118 @@
+package org.vaadin.builderchallenge.data.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Least recently used cache of rendered avatar thumbnails, bounded by their total size in bytes. Entries are keyed by
+ * picture version, so a changed picture is never served from the cache, and the old thumbnails age out.
+ */
+@Component
+public class AvatarThumbnailCache implements MeterBinder {
+
+    record Key(Long userId, int version, AvatarSize size) {
+    }
+
+    private final long maxBytes;
+    private final Map<Key, byte[]> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long bytes;
+    private long evicted;
+
+    public AvatarThumbnailCache(@Value("${users.avatars.thumbnail-cache-mb:16}") int maxMegabytes) {
+        if (maxMegabytes < 1) {
+            throw new IllegalArgumentException("maxMegabytes must be positive");
+        }
+        this.maxBytes = maxMegabytes * 1024L * 1024L;
+    }
+
+    /**
+     * Returns the cached thumbnail of the picture, or renders and caches it if there is none.
+     */
+    public Optional<byte[]> get(ProfilePictureInfo info, AvatarSize size, Supplier<Optional<byte[]>> renderer) {
+        requireNonNull(info, "info must not be null");
+        requireNonNull(size, "size must not be null");
+        var key = new Key(info.userId(), info.version(), size);
+        synchronized (this) {
+            var thumbnail = thumbnails.get(key);
+            if (thumbnail != null) {
+                hits.increment();
+                return Optional.of(thumbnail);
+            }
+        }
+        misses.increment();
+        var rendered = renderer.get();
+        rendered.ifPresent(thumbnail -> put(key, thumbnail));
+        return rendered;
+    }
+
+    private synchronized void put(Key key, byte[] thumbnail) {
+        if (thumbnail.length > maxBytes) {
+            return;
+        }
+        var previous = thumbnails.put(key, thumbnail);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+        bytes += thumbnail.length;
+        var eldest = thumbnails.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+            evicted++;
+        }
+    }
+
+    public synchronized void invalidate(Long userId) {
+        var entries = thumbnails.entrySet().iterator();
+        while (entries.hasNext()) {
+            var entry = entries.next();
+            if (entry.getKey().userId().equals(userId)) {
+                bytes -= entry.getValue().length;
+                entries.remove();
+            }
+        }
+    }
+
+    public synchronized AvatarThumbnailCacheStats stats() {
+        return new AvatarThumbnailCacheStats(hits.sum(), misses.sum(), thumbnails.size(), bytes, evicted);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", this, cache -> cache.stats().hits())
+                .tag("cache", "avatar-thumbnails").tag("result", "hit")
+                .description("Avatar thumbnail lookups answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, cache -> cache.stats().misses())
+                .tag("cache", "avatar-thumbnails").tag("result", "miss")
+                .description("Avatar thumbnail lookups that rendered a thumbnail")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this, cache -> cache.stats().evicted())
+                .tag("cache", "avatar-thumbnails")
+                .description("Avatar thumbnails dropped to stay within the size limit")
+                .register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.stats().size())
+                .tag("cache", "avatar-thumbnails")
+                .description("Avatar thumbnails currently cached")
+                .register(registry);
+        Gauge.builder("cache.bytes", this, cache -> cache.stats().bytes())
+                .tag("cache", "avatar-thumbnails")
+                .baseUnit("bytes")
+                .description("Total size of the cached avatar thumbnails")
+                .register(registry);
+    }
+}
@@ -0,0 +1,13 @@
+package org.vaadin.builderchallenge.data.service;
+
+/**
+ * Snapshot of the {@link AvatarThumbnailCache} counters.
+ *
+ * @param hits    lookups answered from the cache
+ * @param misses  lookups that rendered a thumbnail
+ * @param size    thumbnails currently cached
+ * @param bytes   total size of the cached thumbnails
+ * @param evicted thumbnails dropped to stay within the size limit
+ */
+public record AvatarThumbnailCacheStats(long hits, long misses, int size, long bytes, long evicted) {
+}
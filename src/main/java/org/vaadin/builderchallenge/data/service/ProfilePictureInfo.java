@@ -0,0 +1,18 @@
+package org.vaadin.builderchallenge.data.service;
+
+/**
+ * Everything about a profile picture except the image itself.
+ */
+public record ProfilePictureInfo(Long userId, int version, String contentType, long size) {
+
+    /**
+     * Changes whenever the picture does, so it can be used as an entity tag.
+     */
+    public String etag() {
+        return "\"" + userId + "-" + version + "\"";
+    }
+
+    public String etag(AvatarSize size) {
+        return "\"" + userId + "-" + version + "-" + size.param() + "\"";
+    }
+}
@@ -0,0 +1,8 @@
+package org.vaadin.builderchallenge.data.service;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.vaadin.builderchallenge.data.entity.ProfilePicture;
+
+public interface ProfilePictureRepository extends JpaRepository<ProfilePicture, Long> {
+
+}
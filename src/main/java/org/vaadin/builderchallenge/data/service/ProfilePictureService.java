@@ -0,0 +1,220 @@
+package org.vaadin.builderchallenge.data.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.vaadin.builderchallenge.data.entity.ProfilePicture;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Profile pictures are written through JPA but read with plain JDBC, so that they can be streamed from the database
+ * without ever holding a whole image in memory. Avatars use {@link AvatarSize small thumbnails} instead, rendered on
+ * first access and kept in the {@link AvatarThumbnailCache}. Pictures with more pixels than configured are never
+ * decoded.
+ */
+@Service
+public class ProfilePictureService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProfilePictureService.class);
+
+    private final ProfilePictureRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AvatarThumbnailCache thumbnailCache;
+    private final UserSummaryCache summaryCache;
+    private final long maxPixels;
+
+    public ProfilePictureService(ProfilePictureRepository repository, JdbcTemplate jdbcTemplate,
+            AvatarThumbnailCache thumbnailCache, UserSummaryCache summaryCache,
+            @Value("${users.avatars.max-pixels:25000000}") long maxPixels) {
+        if (maxPixels < 1) {
+            throw new IllegalArgumentException("maxPixels must be positive");
+        }
+        this.maxPixels = maxPixels;
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.thumbnailCache = thumbnailCache;
+        this.summaryCache = summaryCache;
+    }
+
+    public Optional<ProfilePictureInfo> getInfo(Long userId) {
+        requireNonNull(userId, "userId must not be null");
+        return jdbcTemplate.query("select version, content_type, octet_length(data) from profile_picture "
+                + "where user_id = ?", rs -> rs.next()
+                        ? Optional.of(new ProfilePictureInfo(userId, rs.getInt(1), rs.getString(2), rs.getLong(3)))
+                        : Optional.empty(), userId);
+    }
+
+    /**
+     * Copies the picture described by {@code info} to {@code out}. Returns false, without writing anything, if the
+     * picture has been changed or removed since.
+     */
+    public boolean writeTo(ProfilePictureInfo info, OutputStream out) throws IOException {
+        requireNonNull(out, "out must not be null");
+        return read(info, in -> {
+            in.transferTo(out);
+            return true;
+        }).isPresent();
+    }
+
+    /**
+     * Returns the picture described by {@code info} scaled down to a square JPEG of the given size, or nothing if the
+     * picture has been changed or removed since, cannot be decoded, or has more pixels than allowed.
+     */
+    public Optional<byte[]> getThumbnail(ProfilePictureInfo info, AvatarSize size) {
+        requireNonNull(size, "size must not be null");
+        return thumbnailCache.get(info, size, () -> {
+            try {
+                return read(info, in -> decode(in, size.pixels(), maxPixels))
+                        .map(image -> toJpeg(scale(image, size.pixels())));
+            } catch (IOException e) {
+                log.warn("Could not render the {} thumbnail of user {}", size.param(), info.userId(), e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    private interface DataReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    private <T> Optional<T> read(ProfilePictureInfo info, DataReader<T> reader) throws IOException {
+        requireNonNull(info, "info must not be null");
+        var result = new ArrayList<T>(1);
+        try {
+            jdbcTemplate.query("select data from profile_picture where user_id = ? and version = ?",
+                    (RowCallbackHandler) rs -> {
+                        try (InputStream in = rs.getBinaryStream(1)) {
+                            result.add(reader.read(in));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, info.userId(), info.version());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return result.stream().filter(Objects::nonNull).findFirst();
+    }
+
+    /**
+     * Decodes the middle square of the image, or returns null if it is in no known format. The dimensions are read
+     * from the header first, so that an image with more than {@code maxPixels} is rejected before its pixels are
+     * allocated. Large images are subsampled while decoding, down to no less than twice the target size, so that
+     * {@link #scale} still has enough pixels to smooth.
+     */
+    static BufferedImage decode(InputStream in, int pixels, long maxPixels) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IIOException("%dx%d pixels exceed the limit of %d".formatted(width, height, maxPixels));
+                }
+                int side = Math.min(width, height);
+                int step = Math.max(1, side / (2 * pixels));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Crops the middle square out of the image and halves it until the next step would take it below the target, so
+     * that the final bilinear pass samples every source pixel. Images smaller than the target are not enlarged.
+     */
+    static BufferedImage scale(BufferedImage image, int pixels) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        int target = Math.min(side, pixels);
+        BufferedImage current = image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2,
+                side, side);
+        do {
+            side = Math.max(side / 2, target);
+            current = draw(current, side);
+        } while (side > target);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int side) {
+        // No alpha channel, JPEG cannot store one
+        var target = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, side, side, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] toJpeg(BufferedImage image) {
+        var out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Transactional
+    public ProfilePicture update(Long userId, String contentType, byte[] data) {
+        requireNonNull(userId, "userId must not be null");
+        requireNonNull(contentType, "contentType must not be null");
+        requireNonNull(data, "data must not be null");
+        if (data.length > ProfilePicture.MAX_SIZE) {
+            throw new IllegalArgumentException("Profile picture must not be larger than " + ProfilePicture.MAX_SIZE
+                    + " bytes");
+        }
+        var picture = repository.findById(userId).orElseGet(() -> {
+            var created = new ProfilePicture();
+            created.setUserId(userId);
+            return created;
+        });
+        picture.setContentType(contentType);
+        picture.setData(data);
+        thumbnailCache.invalidate(userId);
+        summaryCache.invalidate(userId);
+        return repository.save(picture);
+    }
+
+    public void delete(Long userId) {
+        requireNonNull(userId, "userId must not be null");
+        jdbcTemplate.update("delete from profile_picture where user_id = ?", userId);
+        thumbnailCache.invalidate(userId);
+        summaryCache.invalidate(userId);
+    }
+}
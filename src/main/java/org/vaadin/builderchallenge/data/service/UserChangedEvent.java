@@ -0,0 +1,7 @@
+package org.vaadin.builderchallenge.data.service;
+
+/**
+ * Published by {@link UserService} after a user has been updated or deleted, for caches of user data to drop it.
+ */
+public record UserChangedEvent(Long userId) {
+}
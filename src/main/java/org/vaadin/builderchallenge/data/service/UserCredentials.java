@@ -0,0 +1,10 @@
+package org.vaadin.builderchallenge.data.service;
+
+import java.util.Set;
+import org.vaadin.builderchallenge.data.Role;
+
+/**
+ * The parts of a {@link org.vaadin.builderchallenge.data.entity.User} needed to sign in.
+ */
+public record UserCredentials(Long id, String username, String hashedPassword, Set<Role> roles) {
+}
@@ -1,10 +1,53 @@
 package org.vaadin.builderchallenge.data.service;
 
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.vaadin.builderchallenge.data.Role;
 import org.vaadin.builderchallenge.data.entity.User;
 
 public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
 
+    // Shared by the summary queries, which add their own conditions
+    String SUMMARIES = "select new org.vaadin.builderchallenge.data.service.UserSummary(u.id, u.version, u.username, "
+            + "u.name, case when p.userId is null then false else true end) "
+            + "from User u left join ProfilePicture p on p.userId = u.id ";
+
     User findByUsername(String username);
+
+    @Query(SUMMARIES + "where u.username = :username")
+    Optional<UserSummary> findSummaryByUsername(String username);
+
+    @Query(SUMMARIES + "where u.id > :afterId order by u.id")
+    List<UserSummary> findSummariesAfterId(Long afterId, Pageable pageable);
+
+    // The lower bound on the name alone lets the database seek on the (name, id) index, the rest skips the ties
+    @Query(SUMMARIES + "where u.name >= :afterName and (u.name > :afterName or u.id > :afterId) "
+            + "order by u.name, u.id")
+    List<UserSummary> findSummariesAfterName(String afterName, Long afterId, Pageable pageable);
+
+    @Query("select u.id, u.hashedPassword, r from User u left join u.roles r where u.username = :username")
+    List<Object[]> findCredentialRowsByUsername(String username);
+
+    /**
+     * Returns what is needed to sign the user in, without loading the entity.
+     */
+    default Optional<UserCredentials> findCredentialsByUsername(String username) {
+        List<Object[]> rows = findCredentialRowsByUsername(username);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        var roles = EnumSet.noneOf(Role.class);
+        for (Object[] row : rows) {
+            if (row[2] != null) {
+                roles.add((Role) row[2]);
+            }
+        }
+        Object[] first = rows.get(0);
+        return Optional.of(new UserCredentials((Long) first[0], username, (String) first[1], roles));
+    }
 }
@@ -1,31 +1,97 @@
 package org.vaadin.builderchallenge.data.service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.vaadin.builderchallenge.data.entity.User;
 
+import static java.util.Objects.requireNonNull;
+
 @Service
 public class UserService {
 
     private final UserRepository repository;
+    private final UserSummaryCache summaryCache;
+    private final ProfilePictureService profilePictures;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate exportTemplate;
 
-    public UserService(UserRepository repository) {
+    public UserService(UserRepository repository, UserSummaryCache summaryCache,
+            ProfilePictureService profilePictures, ApplicationEventPublisher eventPublisher,
+            JdbcTemplate jdbcTemplate, @Value("${users.export.fetch-size:500}") int exportFetchSize) {
+        if (exportFetchSize < 1) {
+            throw new IllegalArgumentException("exportFetchSize must be positive");
+        }
         this.repository = repository;
+        this.summaryCache = summaryCache;
+        this.profilePictures = profilePictures;
+        this.eventPublisher = eventPublisher;
+        // A template of its own, so that the fetch size only applies to exports
+        this.exportTemplate = new JdbcTemplate(requireNonNull(jdbcTemplate.getDataSource()));
+        this.exportTemplate.setFetchSize(exportFetchSize);
     }
 
     public Optional<User> get(Long id) {
         return repository.findById(id);
     }
 
+    public Optional<UserSummary> getSummary(String username) {
+        return summaryCache.get(username, repository::findSummaryByUsername);
+    }
+
     public User update(User entity) {
-        return repository.save(entity);
+        var saved = repository.save(entity);
+        summaryCache.invalidate(saved.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getId()));
+        return saved;
     }
 
+    // The user and their picture are removed together or not at all
+    @Transactional
     public void delete(Long id) {
         repository.deleteById(id);
+        profilePictures.delete(id);
+        summaryCache.invalidate(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
+    }
+
+    /**
+     * Returns up to {@code limit} users in id order, starting after the user with the given id, or from the first
+     * user if it is null. Unlike {@link #list(Pageable)} every page costs the same, however deep.
+     */
+    public List<UserSummary> listSummaries(Long afterId, int limit) {
+        return repository.findSummariesAfterId(afterId == null ? Long.MIN_VALUE : afterId, PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Returns up to {@code limit} users in name order, starting after the given user, or from the first user if it is
+     * null. Users without a name are left out.
+     */
+    public List<UserSummary> listSummariesByName(UserSummary after, int limit) {
+        if (after == null) {
+            return repository.findSummariesAfterName("", Long.MIN_VALUE, PageRequest.ofSize(limit));
+        }
+        return repository.findSummariesAfterName(after.name(), after.id(), PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Streams all users in id order from a database cursor, for exports too large to hold in memory. The stream holds
+     * a connection until it is closed.
+     */
+    public Stream<UserSummary> streamSummaries() {
+        return exportTemplate.queryForStream("select u.id, u.version, u.username, u.name, p.user_id is not null "
+                + "from application_user u left join profile_picture p on p.user_id = u.id order by u.id",
+                (rs, rowNum) -> new UserSummary(rs.getLong(1), rs.getInt(2), rs.getString(3), rs.getString(4),
+                        rs.getBoolean(5)));
     }
 
     public Page<User> list(Pageable pageable) {
@@ -0,0 +1,10 @@
+package org.vaadin.builderchallenge.data.service;
+
+/**
+ * The parts of a {@link org.vaadin.builderchallenge.data.entity.User} needed to show who is signed in, without the
+ * password, roles or profile picture.
+ *
+ * @param hasPicture whether the user has a profile picture, avatars show initials instead if not
+ */
+public record UserSummary(Long id, int version, String username, String name, boolean hasPicture) {
+}
@@ -0,0 +1,94 @@
+package org.vaadin.builderchallenge.data.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Least recently used cache of {@link UserSummary user summaries} by username. {@link UserService} invalidates the
+ * entries of users it updates or deletes, {@link ProfilePictureService} those of users whose picture changes.
+ */
+@Component
+public class UserSummaryCache implements MeterBinder {
+
+    private final Map<String, UserSummary> summaries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Incremented by every invalidation, so that a summary loaded before it is not cached after it
+    private long generation;
+
+    public UserSummaryCache(@Value("${users.summary-cache.max-size:1000}") int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.summaries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserSummary> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached summary of the user, or loads and caches it if there is none.
+     */
+    public Optional<UserSummary> get(String username, Function<String, Optional<UserSummary>> loader) {
+        requireNonNull(username, "username must not be null");
+        long loadedGeneration;
+        synchronized (this) {
+            var summary = summaries.get(username);
+            if (summary != null) {
+                hits.increment();
+                return Optional.of(summary);
+            }
+            loadedGeneration = generation;
+        }
+        misses.increment();
+        var loaded = loader.apply(username);
+        loaded.ifPresent(summary -> {
+            synchronized (this) {
+                if (generation == loadedGeneration) {
+                    summaries.put(username, summary);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    public synchronized void invalidate(Long userId) {
+        generation++;
+        summaries.values().removeIf(summary -> summary.id().equals(userId));
+    }
+
+    public synchronized UserSummaryCacheStats stats() {
+        return new UserSummaryCacheStats(hits.sum(), misses.sum(), summaries.size());
+    }
+
+    // Named like the meters Micrometer binds for caches, so that cache dashboards pick them up
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", this, cache -> cache.stats().hits())
+                .tag("cache", "user-summaries").tag("result", "hit")
+                .description("User summary lookups answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, cache -> cache.stats().misses())
+                .tag("cache", "user-summaries").tag("result", "miss")
+                .description("User summary lookups that went to the database")
+                .register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.stats().size())
+                .tag("cache", "user-summaries")
+                .description("User summaries currently cached")
+                .register(registry);
+    }
+}
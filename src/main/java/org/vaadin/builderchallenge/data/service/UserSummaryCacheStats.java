@@ -0,0 +1,11 @@
+package org.vaadin.builderchallenge.data.service;
+
+/**
+ * Snapshot of the {@link UserSummaryCache} counters.
+ *
+ * @param hits   lookups answered from the cache
+ * @param misses lookups that went to the database
+ * @param size   summaries currently cached
+ */
+public record UserSummaryCacheStats(long hits, long misses, int size) {
+}
@@ -0,0 +1,155 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.UserInfo;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compact binary encoding of questions, used for the items of the townhall collaboration lists and in the
+ * {@link TownhallEventLog}. Version 1 is laid out as
+ * <pre>
+ * byte    version
+ * varlong id
+ * varint  string count, then every string as varint length and UTF-8 bytes
+ * varint  author id index + 1, author name index + 1 (0 for none)
+ * varint  message index + 1
+ * varint  vote count, then every vote as varint (voter index &lt;&lt; 2 | value ordinal)
+ * </pre>
+ * The author and voter ids are stored once per question in the string table, so e.g. an author voting on their own
+ * question costs one byte. The score and the vote counts per value are not stored: decoding applies every vote with
+ * {@link Question#setVote}, which maintains them.
+ */
+public final class QuestionCodec {
+
+    private static final byte VERSION = 1;
+    private static final int VALUE_BITS = 2;
+
+    private QuestionCodec() {
+    }
+
+    public static byte[] encode(Question question) {
+        requireNonNull(question, "question must not be null");
+        var strings = new LinkedHashMap<String, Integer>();
+        var author = question.getAuthorInfo();
+        var authorId = author == null ? 0 : intern(strings, author.getId());
+        var authorName = author == null ? 0 : intern(strings, author.getName());
+        var message = intern(strings, question.getMessage());
+        var votes = new ArrayList<Long>(question.getVotes().size());
+        question.getVotes().forEach((voterId, vote) ->
+                votes.add((long) (intern(strings, voterId) - 1) << VALUE_BITS | vote.getValue().ordinal()));
+
+        var out = new ByteArrayOutputStream(64 + (question.getMessage() == null ? 0 : question.getMessage().length()));
+        out.write(VERSION);
+        writeVarLong(out, question.getId());
+        writeVarLong(out, strings.size());
+        for (var string : strings.keySet()) {
+            var bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+        writeVarLong(out, authorId);
+        writeVarLong(out, authorName);
+        writeVarLong(out, message);
+        writeVarLong(out, votes.size());
+        votes.forEach(vote -> writeVarLong(out, vote));
+        return out.toByteArray();
+    }
+
+    public static Question decode(byte[] bytes) {
+        requireNonNull(bytes, "bytes must not be null");
+        var in = ByteBuffer.wrap(bytes);
+        try {
+            var version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported question encoding version " + version);
+            }
+            var id = readVarLong(in);
+            var strings = new ArrayList<String>();
+            for (var count = readVarLong(in); count > 0; --count) {
+                var string = new byte[readLength(in)];
+                in.get(string);
+                strings.add(new String(string, StandardCharsets.UTF_8));
+            }
+            var authorId = lookup(strings, readVarLong(in));
+            var authorName = lookup(strings, readVarLong(in));
+            var message = lookup(strings, readVarLong(in));
+            var question = new Question(id, authorId == null ? null : new UserInfo(authorId, authorName), message);
+            for (var count = readVarLong(in); count > 0; --count) {
+                var vote = readVarLong(in);
+                var voterId = strings.get((int) (vote >>> VALUE_BITS));
+                var value = Vote.Value.values()[(int) (vote & ((1 << VALUE_BITS) - 1))];
+                question.setVote(new UserInfo(voterId), new Vote(voterId, value));
+            }
+            return question;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Malformed question encoding", ex);
+        }
+    }
+
+    /**
+     * Encodes the question as Base64 text, the form in which it is stored in collaboration lists.
+     */
+    public static String encodeToString(Question question) {
+        return Base64.getEncoder().encodeToString(encode(question));
+    }
+
+    public static Question decode(String encoded) {
+        requireNonNull(encoded, "encoded must not be null");
+        return decode(Base64.getDecoder().decode(encoded));
+    }
+
+    public static List<Question> decodeAll(List<String> encoded) {
+        return encoded.stream().map(QuestionCodec::decode).toList();
+    }
+
+    // Returns the index of the string in the table plus one, or 0 for null
+    private static int intern(Map<String, Integer> strings, String string) {
+        return string == null ? 0 : strings.computeIfAbsent(string, key -> strings.size() + 1);
+    }
+
+    private static String lookup(List<String> strings, long index) {
+        return index == 0 ? null : strings.get((int) index - 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // Checked before allocating, so that a corrupt length can't ask for more memory than the encoding has bytes
+    private static int readLength(ByteBuffer in) {
+        var length = readVarLong(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Malformed question encoding, string of " + length + " bytes with "
+                    + in.remaining() + " remaining");
+        }
+        return (int) length;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            var b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,73 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Lock-free generator of unique, time-ordered question ids. An id consists of 41 bits of milliseconds since 2023, a
+ * 10-bit node number and a 12-bit sequence number, so nodes never clash as long as every node is configured with its
+ * own {@code townhall.ids.node}. A node that is part of a TCP cluster refuses to start without one. When the clock
+ * goes backwards or the sequence runs out within a millisecond, ids borrow from the next millisecond instead of
+ * waiting.
+ */
+@Component
+public class QuestionIdGenerator {
+
+    private static final long EPOCH = Instant.parse("2023-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+    private final LongSupplier clock;
+    // Timestamp and sequence number of the last id, i.e. the id without the node bits
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public QuestionIdGenerator(@Value("${townhall.ids.node:}") String node,
+                               @Value("${webrtc.cluster.transport:in-jvm}") String clusterTransport) {
+        this(parseNode(node, clusterTransport), System::currentTimeMillis);
+    }
+
+    QuestionIdGenerator(long node, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("node must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clock = requireNonNull(clock, "clock must not be null");
+    }
+
+    private static long parseNode(String node, String clusterTransport) {
+        if (!node.isBlank()) {
+            return Long.parseLong(node.trim());
+        }
+        if ("tcp".equals(clusterTransport)) {
+            throw new IllegalStateException("townhall.ids.node must be set to a number unique to this node, "
+                    + "as it is part of a cluster");
+        }
+        return 0;
+    }
+
+    public long nextId() {
+        var next = last.updateAndGet(previous -> Math.max((clock.getAsLong() - EPOCH) << SEQUENCE_BITS,
+                previous + 1));
+        return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS
+                | next & SEQUENCE_MASK;
+    }
+
+    /**
+     * Makes sure all later ids are greater than the given one, e.g. one recovered after a restart.
+     */
+    public void advancePast(long id) {
+        var state = (id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS | id & SEQUENCE_MASK;
+        last.accumulateAndGet(state, Math::max);
+    }
+}
@@ -0,0 +1,107 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.ListKey;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Remembers, per townhall topic, under which key of the topic's collaboration list each question is stored, so that
+ * questions can be moved without reading the list. A topic's index lives as long as a view has the topic open.
+ */
+@Service
+public class QuestionKeyIndex implements MeterBinder {
+
+    private final ConcurrentHashMap<String, TopicIndex> topics = new ConcurrentHashMap<>();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * Opens the topic for one view. Returns {@code true} if it was not open yet, i.e. the caller is the first one to
+     * use the topic's list since it was last closed or since startup.
+     */
+    public boolean open(String topic) {
+        requireNonNull(topic, "topic must not be null");
+        var opened = new boolean[1];
+        topics.compute(topic, (name, index) -> {
+            if (index == null) {
+                opened[0] = true;
+                index = new TopicIndex();
+            }
+            index.views++;
+            return index;
+        });
+        return opened[0];
+    }
+
+    /**
+     * Closes the topic for one view, and drops its index once the last view has closed it.
+     */
+    public void close(String topic) {
+        topics.computeIfPresent(requireNonNull(topic, "topic must not be null"), (name, index) -> {
+            if (--index.views > 0) {
+                return index;
+            }
+            evicted.add(index.keys.size());
+            return null;
+        });
+    }
+
+    /**
+     * Indexes the key of the question. Does nothing if no view has the topic open, as the index would be rebuilt
+     * when it is opened again anyway.
+     */
+    public void put(String topic, Long questionId, ListKey key) {
+        requireNonNull(questionId, "questionId must not be null");
+        requireNonNull(key, "key must not be null");
+        var index = topics.get(requireNonNull(topic, "topic must not be null"));
+        if (index != null) {
+            index.keys.put(questionId, key);
+        }
+    }
+
+    public Optional<ListKey> get(String topic, Long questionId) {
+        var index = topics.get(requireNonNull(topic, "topic must not be null"));
+        return index == null ? Optional.empty() : Optional.ofNullable(index.keys.get(questionId));
+    }
+
+    public void remove(String topic, Long questionId) {
+        var index = topics.get(requireNonNull(topic, "topic must not be null"));
+        if (index != null && index.keys.remove(questionId) != null) {
+            evicted.increment();
+        }
+    }
+
+    public QuestionKeyIndexStats stats() {
+        var keys = topics.values().stream().mapToLong(index -> index.keys.size()).sum();
+        return new QuestionKeyIndexStats(topics.size(), keys, evicted.sum());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("townhall.key-index.topics", this, index -> index.stats().topics())
+                .description("Townhall topics with an open question key index")
+                .register(registry);
+        Gauge.builder("townhall.key-index.keys", this, index -> index.stats().keys())
+                .description("Question list keys currently indexed")
+                .register(registry);
+        FunctionCounter.builder("townhall.key-index.evicted", this, index -> index.stats().evicted())
+                .description("Question list keys removed because their question or topic went away")
+                .register(registry);
+    }
+
+    // Views is only changed inside compute, so opening and closing a topic don't race
+    private static final class TopicIndex {
+
+        private final Map<Long, ListKey> keys = new ConcurrentHashMap<>();
+        private int views;
+    }
+}
@@ -0,0 +1,11 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+/**
+ * Snapshot of the {@link QuestionKeyIndex} size.
+ *
+ * @param topics  topics with an index
+ * @param keys    list keys currently indexed
+ * @param evicted list keys removed because their question or topic went away
+ */
+public record QuestionKeyIndexStats(int topics, long keys, long evicted) {
+}
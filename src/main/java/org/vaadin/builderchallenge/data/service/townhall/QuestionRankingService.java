@@ -0,0 +1,246 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.UserInfo;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps the questions of each townhall topic ranked by score, highest first. Among equal scores, the question with
+ * more votes of the highest value ranks first, then older questions first. Votes are applied to the canonical questions in O(log n) each; callers only ever get copies. Every change
+ * is written to the {@link TownhallEventLog}, and the state is recovered from it at startup.
+ */
+@Service
+public class QuestionRankingService {
+
+    private static final Comparator<Question> RANKING = Comparator.comparingInt(Question::getScore).reversed()
+            .thenComparing(QuestionRankingService::compareVoteCounts)
+            .thenComparing(Question::getId);
+
+    private final ConcurrentHashMap<String, Ranking> rankings = new ConcurrentHashMap<>();
+    private final TownhallEventLog eventLog;
+    private final QuestionIdGenerator idGenerator;
+
+    /**
+     * Where a question currently is in the ranking.
+     *
+     * @param question a copy of the question
+     * @param next     a copy of the question ranked right after it, or {@code null} if it is ranked last
+     * @param rank     zero-based rank of the question
+     */
+    public record Placement(Question question, Question next, int rank) {
+    }
+
+    public QuestionRankingService(TownhallEventLog eventLog, QuestionIdGenerator idGenerator) {
+        this.eventLog = requireNonNull(eventLog, "eventLog must not be null");
+        this.idGenerator = requireNonNull(idGenerator, "idGenerator must not be null");
+    }
+
+    @PostConstruct
+    void recover() throws IOException {
+        eventLog.recover(new TownhallEventLog.Listener() {
+            @Override
+            public void questionRestored(String topic, Question question) {
+                idGenerator.advancePast(question.getId());
+                var ranking = ranking(topic);
+                synchronized (ranking) {
+                    ranking.add(question);
+                }
+            }
+
+            @Override
+            public void voteReplayed(VoteEvent event) {
+                var ranking = ranking(event.topic());
+                synchronized (ranking) {
+                    if (ranking.changes(event)) {
+                        ranking.apply(event);
+                    }
+                }
+            }
+        });
+    }
+
+    public Question ask(String topic, UserInfo author, String message) {
+        requireNonNull(author, "author must not be null");
+        requireNonNull(message, "message must not be null");
+        var ranking = ranking(topic);
+        Question question;
+        synchronized (ranking) {
+            question = ranking.add(new Question(idGenerator.nextId(), author, message));
+            eventLog.appendQuestion(topic, question);
+            question = new Question(question);
+        }
+        snapshotIfDue();
+        return question;
+    }
+
+    /**
+     * Applies the votes in order and returns the new placements of the questions that changed. Votes that don't
+     * change anything, such as repeating the current vote or retracting a missing one, and votes on unknown
+     * questions are ignored. Each vote is logged before it is applied, so if logging fails, the votes before it are
+     * applied and logged, and the rest are not applied at all.
+     */
+    public List<Placement> apply(String topic, Collection<VoteEvent> events) {
+        var ranking = ranking(topic);
+        var placements = new ArrayList<Placement>();
+        synchronized (ranking) {
+            var changed = new LinkedHashSet<Question>();
+            for (var event : events) {
+                if (ranking.changes(event)) {
+                    eventLog.appendVote(event);
+                    changed.add(ranking.apply(event));
+                }
+            }
+            changed.forEach(question -> placements.add(ranking.placementOf(question)));
+        }
+        snapshotIfDue();
+        return placements;
+    }
+
+    public Optional<Placement> placementOf(String topic, Long questionId) {
+        var ranking = ranking(topic);
+        synchronized (ranking) {
+            return Optional.ofNullable(ranking.questions.get(questionId)).map(ranking::placementOf);
+        }
+    }
+
+    /**
+     * Returns the zero-based rank of the question, if it exists.
+     */
+    public OptionalInt rankOf(String topic, Long questionId) {
+        var ranking = ranking(topic);
+        synchronized (ranking) {
+            var question = ranking.questions.get(questionId);
+            return question == null ? OptionalInt.empty() : OptionalInt.of(ranking.tree.rankOf(question));
+        }
+    }
+
+    public List<Question> top(String topic, int limit) {
+        return page(topic, 0, limit);
+    }
+
+    public List<Question> page(String topic, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        var ranking = ranking(topic);
+        synchronized (ranking) {
+            return ranking.tree.range(offset, limit).stream().map(Question::new).toList();
+        }
+    }
+
+    /**
+     * Returns up to {@code count} distinct positive scores, highest first, e.g. to award medals to the top scores.
+     */
+    public List<Integer> topScores(String topic, int count) {
+        var ranking = ranking(topic);
+        synchronized (ranking) {
+            var scores = new ArrayList<Integer>(count);
+            var index = 0;
+            while (scores.size() < count && index < ranking.tree.size()) {
+                var score = ranking.tree.get(index).getScore();
+                if (score <= 0) {
+                    break;
+                }
+                scores.add(score);
+                index = ranking.tree.prefixLength(question -> question.getScore() >= score);
+            }
+            return scores;
+        }
+    }
+
+    public int size(String topic) {
+        var ranking = ranking(topic);
+        synchronized (ranking) {
+            return ranking.tree.size();
+        }
+    }
+
+    // Compares the maintained vote counts of two questions, from the highest value down
+    private static int compareVoteCounts(Question question, Question other) {
+        var values = Vote.Value.values();
+        for (var i = values.length - 1; i >= 0; i--) {
+            var comparison = Integer.compare(other.getVoteCount(values[i]), question.getVoteCount(values[i]));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    private Ranking ranking(String topic) {
+        requireNonNull(topic, "topic must not be null");
+        return rankings.computeIfAbsent(topic, name -> new Ranking());
+    }
+
+    // Each topic is copied under its own lock, together with the log position its state corresponds to
+    private void snapshotIfDue() {
+        if (!eventLog.claimSnapshot()) {
+            return;
+        }
+        var topics = new HashMap<String, TownhallEventLog.TopicSnapshot>();
+        rankings.forEach((topic, ranking) -> {
+            synchronized (ranking) {
+                var questions = ranking.questions.values().stream().map(Question::new).toList();
+                topics.put(topic, new TownhallEventLog.TopicSnapshot(eventLog.sequence(), questions));
+            }
+        });
+        eventLog.writeSnapshot(topics);
+    }
+
+    private static final class Ranking {
+        private final Map<Long, Question> questions = new HashMap<>();
+        private final RankedTree<Question> tree = new RankedTree<>(RANKING);
+
+        private Question add(Question question) {
+            var previous = questions.put(question.getId(), question);
+            if (previous != null) {
+                tree.remove(previous);
+            }
+            tree.add(question);
+            return question;
+        }
+
+        private boolean changes(VoteEvent event) {
+            var question = questions.get(event.questionId());
+            var current = question == null ? null : question.getVotes().get(event.voterId());
+            return question != null && !Objects.equals(current == null ? null : current.getValue(), event.value());
+        }
+
+        // Must only be called with events that change the ranking
+        private Question apply(VoteEvent event) {
+            var question = questions.get(event.questionId());
+            var current = question.getVotes().get(event.voterId());
+            tree.remove(question);
+            if (event.isRetraction()) {
+                question.removeVote(current);
+            } else {
+                question.setVote(new UserInfo(event.voterId()), new Vote(event.voterId(), event.value()));
+            }
+            tree.add(question);
+            return question;
+        }
+
+        private Placement placementOf(Question question) {
+            var rank = tree.rankOf(question);
+            var next = rank + 1 < tree.size() ? new Question(tree.get(rank + 1)) : null;
+            return new Placement(new Question(question), next, rank);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Order-statistic treap: a sorted set that also answers "element at index" and "index of element" in O(log n). Not
+ * thread-safe; elements must not change their ordering while they are in the tree.
+ */
+final class RankedTree<T> {
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    RankedTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Adds the value, unless an equal value is already in the tree.
+     */
+    boolean add(T value) {
+        if (rankOf(value) >= 0) {
+            return false;
+        }
+        var split = split(root, value);
+        root = merge(merge(split.left(), new Node<>(value)), split.right());
+        return true;
+    }
+
+    boolean remove(T value) {
+        var split = split(root, value);
+        var rest = splitAt(split.right(), 1);
+        if (rest.left() != null && comparator.compare(rest.left().value, value) == 0) {
+            root = merge(split.left(), rest.right());
+            return true;
+        }
+        root = merge(split.left(), merge(rest.left(), rest.right()));
+        return false;
+    }
+
+    /**
+     * Returns the zero-based index of the value, or -1 if it is not in the tree.
+     */
+    int rankOf(T value) {
+        var node = root;
+        var rank = 0;
+        while (node != null) {
+            var comparison = comparator.compare(value, node.value);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns how many values, from the first one on, match the predicate. The predicate must hold for a prefix of
+     * the values and for none after it.
+     */
+    int prefixLength(Predicate<? super T> inPrefix) {
+        var node = root;
+        var length = 0;
+        while (node != null) {
+            if (inPrefix.test(node.value)) {
+                length += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return length;
+    }
+
+    T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        var node = root;
+        while (true) {
+            var leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} values in order, starting at the given index.
+     */
+    List<T> range(int offset, int limit) {
+        var result = new ArrayList<T>(Math.max(0, Math.min(limit, size() - offset)));
+        collect(root, offset, offset + limit, 0, result);
+        return result;
+    }
+
+    private void collect(Node<T> node, int from, int to, int base, List<T> result) {
+        if (node == null || base >= to || base + node.size <= from) {
+            return;
+        }
+        collect(node.left, from, to, base, result);
+        var index = base + size(node.left);
+        if (index >= from && index < to) {
+            result.add(node.value);
+        }
+        collect(node.right, from, to, index + 1, result);
+    }
+
+    // Splits into values less than the given one and the rest
+    private Split<T> split(Node<T> node, T value) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        if (comparator.compare(node.value, value) < 0) {
+            var split = split(node.right, value);
+            node.right = split.left();
+            return new Split<>(node.update(), split.right());
+        } else {
+            var split = split(node.left, value);
+            node.left = split.right();
+            return new Split<>(split.left(), node.update());
+        }
+    }
+
+    // Splits into the first count values and the rest
+    private Split<T> splitAt(Node<T> node, int count) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        if (size(node.left) < count) {
+            var split = splitAt(node.right, count - size(node.left) - 1);
+            node.right = split.left();
+            return new Split<>(node.update(), split.right());
+        } else {
+            var split = splitAt(node.left, count);
+            node.left = split.right();
+            return new Split<>(split.left(), node.update());
+        }
+    }
+
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.update();
+        } else {
+            right.left = merge(left, right.left);
+            return right.update();
+        }
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private record Split<T>(Node<T> left, Node<T> right) {
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private int size = 1;
+        private Node<T> left;
+        private Node<T> right;
+
+        private Node(T value) {
+            this.value = value;
+        }
+
+        private Node<T> update() {
+            size = 1 + size(left) + size(right);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Append-only log of townhall events in memory-mapped segment files, plus periodic snapshots of the full state.
+ * Recovery loads the newest readable snapshot and replays the events logged after it, per topic. Only enabled when
+ * {@code townhall.log.directory} is set.
+ * <p>
+ * A segment is a sequence of records {@code [int length][int crc32][payload]}, terminated by a zero length. Writes
+ * reach the page cache immediately and are forced to disk every {@code townhall.log.force-interval-ms}. A record that
+ * is torn, fails its checksum or cannot be decoded ends the segment: recovery truncates the segment before it.
+ */
+@Component
+public class TownhallEventLog {
+
+    /**
+     * Receives the recovered state.
+     */
+    public interface Listener {
+
+        void questionRestored(String topic, Question question);
+
+        void voteReplayed(VoteEvent event);
+    }
+
+    /**
+     * The state of a topic up to, but not including, the event with the given sequence number.
+     */
+    public record TopicSnapshot(long sequence, List<Question> questions) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TownhallEventLog.class);
+    private static final byte QUESTION_CREATED = 1;
+    private static final byte VOTE_CAST = 2;
+    private static final byte VOTE_REMOVED = 3;
+    private static final int SNAPSHOT_MAGIC = 0x54484C53;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long snapshotInterval;
+    private final ScheduledExecutorService executor;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence;
+    private long lastSnapshotSequence;
+
+    public TownhallEventLog(@Value("${townhall.log.directory:}") String directory,
+                            @Value("${townhall.log.segment-size-mb:16}") int segmentSizeMb,
+                            @Value("${townhall.log.snapshot-interval:10000}") long snapshotInterval,
+                            @Value("${townhall.log.force-interval-ms:1000}") long forceIntervalMs) {
+        if (segmentSizeMb < 1) {
+            throw new IllegalArgumentException("segmentSizeMb must be positive");
+        }
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("snapshotInterval must be positive");
+        }
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.snapshotInterval = snapshotInterval;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "townhall-event-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (this.directory != null) {
+            executor.scheduleWithFixedDelay(this::force, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Replays the logged state to the listener and opens a new segment for appending. Must be called once, before
+     * anything is appended.
+     */
+    public synchronized void recover(Listener listener) throws IOException {
+        requireNonNull(listener, "listener must not be null");
+        if (directory == null) {
+            return;
+        }
+        var started = System.nanoTime();
+        Files.createDirectories(directory);
+        var topicSequences = loadSnapshot(listener);
+        nextSequence = topicSequences.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        lastSnapshotSequence = nextSequence;
+        var replayed = 0L;
+        for (var file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            replayed += replaySegment(file, topicSequences, listener);
+        }
+        openSegment(0);
+        log.info("Recovered townhall state from {} with {} replayed events in {} ms", directory, replayed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public synchronized void appendQuestion(String topic, Question question) {
+        append(out -> {
+            out.writeByte(QUESTION_CREATED);
+            writeString(out, topic);
+            writeQuestion(out, question);
+        });
+    }
+
+    public synchronized void appendVote(VoteEvent event) {
+        append(out -> {
+            out.writeByte(event.isRetraction() ? VOTE_REMOVED : VOTE_CAST);
+            writeString(out, event.topic());
+            out.writeLong(event.questionId());
+            writeString(out, event.voterId());
+            if (!event.isRetraction()) {
+                out.writeByte(event.value().ordinal());
+            }
+        });
+    }
+
+    /**
+     * Returns the sequence number the next appended event will get.
+     */
+    public synchronized long sequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Returns {@code true} once every {@code townhall.log.snapshot-interval} events, to the caller that should
+     * collect and {@linkplain #writeSnapshot(Map) write} the next snapshot.
+     */
+    public synchronized boolean claimSnapshot() {
+        if (directory == null || nextSequence - lastSnapshotSequence < snapshotInterval) {
+            return false;
+        }
+        lastSnapshotSequence = nextSequence;
+        return true;
+    }
+
+    /**
+     * Writes the snapshot in the background, then deletes the snapshots and segments it makes obsolete.
+     */
+    public void writeSnapshot(Map<String, TopicSnapshot> topics) {
+        requireNonNull(topics, "topics must not be null");
+        if (directory == null) {
+            return;
+        }
+        executor.execute(() -> {
+            var sequence = topics.values().stream().mapToLong(TopicSnapshot::sequence).min().orElse(0);
+            var file = directory.resolve(fileName(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+            var temporary = directory.resolve(file.getFileName() + ".tmp");
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeInt(SNAPSHOT_VERSION);
+                    out.writeInt(topics.size());
+                    for (var entry : topics.entrySet()) {
+                        writeString(out, entry.getKey());
+                        out.writeLong(entry.getValue().sequence());
+                        out.writeInt(entry.getValue().questions().size());
+                        for (var question : entry.getValue().questions()) {
+                            writeQuestion(out, question);
+                        }
+                    }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.debug("Wrote townhall snapshot {}", file);
+                deleteObsoleteFiles(file, sequence);
+            } catch (IOException ex) {
+                log.warn("Could not write townhall snapshot {}", file, ex);
+            }
+        });
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        executor.shutdownNow();
+        force();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.warn("Could not close townhall event log", ex);
+            }
+        }
+    }
+
+    private void append(EventWriter writer) {
+        if (directory == null) {
+            return;
+        }
+        encoded.reset();
+        try {
+            writer.write(new DataOutputStream(encoded));
+            var payload = encoded.toByteArray();
+            if (segment.remaining() < RECORD_HEADER_SIZE + payload.length + 4) {
+                openSegment(RECORD_HEADER_SIZE + payload.length + 4);
+            }
+            crc.reset();
+            crc.update(payload);
+            segment.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            nextSequence++;
+        } catch (IOException ex) {
+            // The in-memory state is still correct, only durability is lost
+            throw new UncheckedIOException("Could not append to townhall event log", ex);
+        }
+    }
+
+    // Opens a new segment starting at the next sequence number, large enough for at least the given record
+    private void openSegment(int minimumSize) throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+        var file = directory.resolve(fileName(SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        // Can only exist after recovery, left empty by a crash right after it was created
+        Files.deleteIfExists(file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minimumSize));
+    }
+
+    private synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    private Map<String, Long> loadSnapshot(Listener listener) throws IOException {
+        var snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        Collections.reverse(snapshots);
+        for (var file : snapshots) {
+            try {
+                var topics = new HashMap<String, Map.Entry<Long, List<Question>>>();
+                try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                        throw new IOException("Unknown snapshot format");
+                    }
+                    for (int topicCount = in.readInt(); topicCount > 0; --topicCount) {
+                        var topic = readString(in);
+                        var sequence = in.readLong();
+                        var questions = new ArrayList<Question>();
+                        for (int questionCount = in.readInt(); questionCount > 0; --questionCount) {
+                            questions.add(readQuestion(in));
+                        }
+                        topics.put(topic, Map.entry(sequence, questions));
+                    }
+                }
+                // Only hand over the state once the whole snapshot could be read
+                var sequences = new HashMap<String, Long>();
+                topics.forEach((topic, state) -> {
+                    sequences.put(topic, state.getKey());
+                    state.getValue().forEach(question -> listener.questionRestored(topic, question));
+                });
+                log.debug("Loaded townhall snapshot {}", file);
+                return sequences;
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Skipping unreadable townhall snapshot {}", file, ex);
+            }
+        }
+        return Map.of();
+    }
+
+    private long replaySegment(Path file, Map<String, Long> topicSequences, Listener listener) throws IOException {
+        var sequence = sequenceOf(file, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        var replayed = 0L;
+        var truncateAt = -1L;
+        try (var readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                var start = buffer.position();
+                var length = buffer.getInt();
+                var checksum = buffer.getInt();
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > buffer.remaining()) {
+                    log.warn("Truncating {} at a torn record", file);
+                    truncateAt = start;
+                    break;
+                }
+                var payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Truncating {} at a corrupt record", file);
+                    truncateAt = start;
+                    break;
+                }
+                Runnable event;
+                try {
+                    event = decode(payload, sequence, topicSequences, listener);
+                } catch (IOException | RuntimeException ex) {
+                    log.warn("Truncating {} at an undecodable record", file, ex);
+                    truncateAt = start;
+                    break;
+                }
+                if (event != null) {
+                    event.run();
+                    replayed++;
+                }
+                nextSequence = Math.max(nextSequence, ++sequence);
+            }
+        }
+        if (truncateAt >= 0) {
+            try (var writeChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                writeChannel.truncate(truncateAt);
+            }
+        }
+        return replayed;
+    }
+
+    // Returns the call that hands the event to the listener, or null if the snapshot already contains the event
+    private Runnable decode(byte[] payload, long sequence, Map<String, Long> topicSequences, Listener listener)
+            throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(payload));
+        var type = in.readByte();
+        var topic = readString(in);
+        if (sequence < topicSequences.getOrDefault(topic, 0L)) {
+            return null;
+        }
+        return switch (type) {
+            case QUESTION_CREATED -> {
+                var question = readQuestion(in);
+                yield () -> listener.questionRestored(topic, question);
+            }
+            case VOTE_CAST -> {
+                var event = VoteEvent.cast(topic, in.readLong(), readString(in), Vote.Value.values()[in.readByte()]);
+                yield () -> listener.voteReplayed(event);
+            }
+            case VOTE_REMOVED -> {
+                var event = VoteEvent.retract(topic, in.readLong(), readString(in));
+                yield () -> listener.voteReplayed(event);
+            }
+            default -> throw new IOException("Unknown event type " + type);
+        };
+    }
+
+    private void deleteObsoleteFiles(Path snapshot, long sequence) throws IOException {
+        for (var file : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (!file.equals(snapshot)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        // A segment is obsolete when the next one starts at or before the snapshot
+        var segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i + 1 < segments.size(); ++i) {
+            if (sequenceOf(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX) <= sequence) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        var name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted(Comparator.comparingLong(file -> sequenceOf(file, prefix, suffix)))
+                    .toList();
+        }
+    }
+
+    private static String fileName(String prefix, long sequence, String suffix) {
+        return prefix + "%020d".formatted(sequence) + suffix;
+    }
+
+    private static long sequenceOf(Path file, String prefix, String suffix) {
+        var name = file.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static void writeQuestion(DataOutput out, Question question) throws IOException {
+        var bytes = QuestionCodec.encode(question);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Question readQuestion(DataInput in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try {
+            return QuestionCodec.decode(bytes);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface EventWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
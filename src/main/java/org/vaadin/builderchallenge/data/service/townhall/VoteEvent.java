@@ -0,0 +1,29 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A vote cast or retracted by a user. A retraction has no value.
+ */
+public record VoteEvent(String topic, Long questionId, String voterId, Vote.Value value) {
+
+    public VoteEvent {
+        requireNonNull(topic, "topic must not be null");
+        requireNonNull(questionId, "questionId must not be null");
+        requireNonNull(voterId, "voterId must not be null");
+    }
+
+    public static VoteEvent cast(String topic, Long questionId, String voterId, Vote.Value value) {
+        return new VoteEvent(topic, questionId, voterId, requireNonNull(value, "value must not be null"));
+    }
+
+    public static VoteEvent retract(String topic, Long questionId, String voterId) {
+        return new VoteEvent(topic, questionId, voterId, null);
+    }
+
+    public boolean isRetraction() {
+        return value == null;
+    }
+}
@@ -0,0 +1,183 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.flow.shared.Registration;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Applies votes in batches. Events are queued per topic and drained by a single writer thread once per coalescing
+ * window; within a batch only the last event of each user on each question counts. The resulting placements go to
+ * one publisher per topic, which moves the questions in the topic's collaboration list. Questions that change while a
+ * topic has no publisher are remembered, and their current placements go to the next publisher that registers.
+ */
+@Service
+public class VoteIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(VoteIngestionService.class);
+    private final ConcurrentHashMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final QuestionRankingService rankingService;
+    private final ScheduledExecutorService executor;
+    private final long coalesceWindowMs;
+    private final int maxBatchSize;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder published = new LongAdder();
+
+    public VoteIngestionService(QuestionRankingService rankingService,
+                                @Value("${townhall.votes.coalesce-window-ms:50}") long coalesceWindowMs,
+                                @Value("${townhall.votes.max-batch-size:1000}") int maxBatchSize) {
+        if (coalesceWindowMs < 0) {
+            throw new IllegalArgumentException("coalesceWindowMs must not be negative");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.rankingService = requireNonNull(rankingService, "rankingService must not be null");
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "townhall-vote-ingestion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void submit(VoteEvent event) {
+        requireNonNull(event, "event must not be null");
+        received.increment();
+        var topic = topic(event.topic());
+        topic.queue.add(event);
+        if (topic.scheduled.compareAndSet(false, true)) {
+            executor.schedule(() -> drain(topic), coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Registers a consumer for the placements of questions whose votes changed. Only the earliest registered
+     * publisher of a topic is called; the next one takes over once it is removed.
+     */
+    public Registration addPublisher(String topicName, Consumer<List<QuestionRankingService.Placement>> publisher) {
+        requireNonNull(publisher, "publisher must not be null");
+        var topic = topic(topicName);
+        topic.publishers.add(publisher);
+        executor.execute(() -> publishUnpublished(topic));
+        return () -> topic.publishers.remove(publisher);
+    }
+
+    public VoteIngestionStats stats() {
+        var pending = topics.values().stream().mapToLong(topic -> topic.queue.size()).sum();
+        return new VoteIngestionStats(received.sum(), coalesced.sum(), batches.sum(), published.sum(), pending);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Topic topic(String name) {
+        requireNonNull(name, "topic must not be null");
+        return topics.computeIfAbsent(name, Topic::new);
+    }
+
+    private void drain(Topic topic) {
+        // Cleared before polling, so that an event submitted during the drain schedules the next one
+        topic.scheduled.set(false);
+        var batch = new LinkedHashMap<VoteKey, VoteEvent>();
+        VoteEvent event;
+        for (var i = 0; i < maxBatchSize && (event = topic.queue.poll()) != null; ++i) {
+            if (batch.put(new VoteKey(event.questionId(), event.voterId()), event) != null) {
+                coalesced.increment();
+            }
+        }
+        if (!topic.queue.isEmpty() && topic.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> drain(topic));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.increment();
+        List<QuestionRankingService.Placement> placements;
+        try {
+            placements = rankingService.apply(topic.name, batch.values());
+        } catch (RuntimeException ex) {
+            // Some of the votes may have been applied, so the questions are published again from the ranking
+            log.warn("Could not apply {} votes to {}", batch.size(), topic.name, ex);
+            batch.keySet().forEach(key -> topic.unpublished.add(key.questionId()));
+            publishUnpublished(topic);
+            return;
+        }
+        if (placements.isEmpty()) {
+            return;
+        }
+        if (topic.publishers.isEmpty()) {
+            log.debug("No publisher for {}, keeping {} placements for the next one", topic.name, placements.size());
+            placements.forEach(placement -> topic.unpublished.add(placement.question().getId()));
+            return;
+        }
+        log.trace("Publishing {} placements from {} votes to {}", placements.size(), batch.size(), topic.name);
+        publish(topic, placements);
+    }
+
+    // Looks up the current placements, as the ones computed when the votes were applied may be outdated by now
+    private void publishUnpublished(Topic topic) {
+        if (topic.unpublished.isEmpty() || topic.publishers.isEmpty()) {
+            return;
+        }
+        var placements = topic.unpublished.stream()
+                .flatMap(questionId -> rankingService.placementOf(topic.name, questionId).stream())
+                .toList();
+        topic.unpublished.clear();
+        log.debug("Publishing {} kept placements to {}", placements.size(), topic.name);
+        publish(topic, placements);
+    }
+
+    private void publish(Topic topic, List<QuestionRankingService.Placement> placements) {
+        var publisher = topic.publishers.stream().findFirst();
+        if (publisher.isEmpty() || placements.isEmpty()) {
+            return;
+        }
+        try {
+            publisher.get().accept(placements);
+            published.add(placements.size());
+        } catch (RuntimeException ex) {
+            log.warn("Could not publish {} placements to {}", placements.size(), topic.name, ex);
+        }
+    }
+
+    private static final class Topic {
+        private final String name;
+        private final Queue<VoteEvent> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final List<Consumer<List<QuestionRankingService.Placement>>> publishers = new CopyOnWriteArrayList<>();
+        // Only used by the writer thread
+        private final Set<Long> unpublished = new LinkedHashSet<>();
+
+        private Topic(String name) {
+            this.name = name;
+        }
+    }
+
+    private record VoteKey(Long questionId, String voterId) {
+    }
+}
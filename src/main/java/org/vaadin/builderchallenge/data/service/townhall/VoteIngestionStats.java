@@ -0,0 +1,13 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+/**
+ * Snapshot of the {@link VoteIngestionService} counters.
+ *
+ * @param received  vote events submitted
+ * @param coalesced vote events superseded by a later event of the same user on the same question
+ * @param batches   batches applied to the ranking
+ * @param published questions whose new placement was handed to a publisher
+ * @param pending   vote events waiting for the next batch
+ */
+public record VoteIngestionStats(long received, long coalesced, long batches, long published, long pending) {
+}
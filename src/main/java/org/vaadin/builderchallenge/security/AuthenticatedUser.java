@@ -4,23 +4,28 @@ import com.vaadin.flow.spring.security.AuthenticationContext;
 import java.util.Optional;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
-import org.vaadin.builderchallenge.data.entity.User;
 import org.vaadin.builderchallenge.data.service.UserRepository;
+import org.vaadin.builderchallenge.data.service.UserSummary;
+import org.vaadin.builderchallenge.data.service.UserSummaryCache;
 
 @Component
 public class AuthenticatedUser {
 
     private final UserRepository userRepository;
     private final AuthenticationContext authenticationContext;
+    private final UserSummaryCache summaryCache;
 
-    public AuthenticatedUser(AuthenticationContext authenticationContext, UserRepository userRepository) {
+    public AuthenticatedUser(AuthenticationContext authenticationContext, UserRepository userRepository,
+            UserSummaryCache summaryCache) {
         this.userRepository = userRepository;
         this.authenticationContext = authenticationContext;
+        this.summaryCache = summaryCache;
     }
 
-    public Optional<User> get() {
+    public Optional<UserSummary> get() {
         return authenticationContext.getAuthenticatedUser(UserDetails.class)
-                .map(userDetails -> userRepository.findByUsername(userDetails.getUsername()));
+                .flatMap(userDetails -> summaryCache.get(userDetails.getUsername(),
+                        userRepository::findSummaryByUsername));
     }
 
     public void logout() {
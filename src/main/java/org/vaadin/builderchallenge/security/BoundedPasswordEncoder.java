@@ -0,0 +1,151 @@
+package org.vaadin.builderchallenge.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs a password encoder on a fixed number of threads with a bounded queue. Hashing is deliberately slow, so when
+ * many users sign in at once this keeps it from taking every core away from the UI. Sign ins that find the queue full,
+ * or wait longer than the timeout, fail and can be retried.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration timeout) {
+        requireNonNull(delegate, "delegate must not be null");
+        requireNonNull(timeout, "timeout must not be null");
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.delegate = delegate;
+        this.timeoutNanos = timeout.toNanos();
+        var threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    var thread = new Thread(runnable, "password-encoder-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                started.increment();
+                waitNanos.add(System.nanoTime() - submittedAt);
+                try {
+                    return task.get();
+                } finally {
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthenticationServiceException("Too many sign ins in progress, try again shortly", e);
+        }
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new AuthenticationServiceException("Too many sign ins in progress, try again shortly", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while checking the password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public PasswordEncoderStats stats() {
+        long startedCount = started.sum();
+        return new PasswordEncoderStats(completed.sum(), rejected.sum(), timedOut.sum(), executor.getQueue().size(),
+                executor.getActiveCount(),
+                Duration.ofNanos(startedCount == 0 ? 0 : waitNanos.sum() / startedCount));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("security.password.requests", this, encoder -> encoder.stats().completed())
+                .tag("outcome", "completed")
+                .description("Passwords hashed or checked")
+                .register(registry);
+        FunctionCounter.builder("security.password.requests", this, encoder -> encoder.stats().rejected())
+                .tag("outcome", "rejected")
+                .description("Password requests turned away because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("security.password.requests", this, encoder -> encoder.stats().timedOut())
+                .tag("outcome", "timed-out")
+                .description("Password requests that gave up waiting for their result")
+                .register(registry);
+        Gauge.builder("security.password.queued", this, encoder -> encoder.stats().queued())
+                .description("Password requests currently waiting for a thread")
+                .register(registry);
+        Gauge.builder("security.password.active", this, encoder -> encoder.stats().active())
+                .description("Password requests currently being hashed or checked")
+                .register(registry);
+        TimeGauge.builder("security.password.average-wait", this, TimeUnit.NANOSECONDS,
+                        encoder -> encoder.stats().averageWait().toNanos())
+                .description("Average time a password request spent in the queue")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
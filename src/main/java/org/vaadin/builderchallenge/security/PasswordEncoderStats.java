@@ -0,0 +1,17 @@
+package org.vaadin.builderchallenge.security;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the {@link BoundedPasswordEncoder} counters.
+ *
+ * @param completed   passwords hashed or checked
+ * @param rejected    requests turned away because the queue was full
+ * @param timedOut    requests that gave up waiting for their result
+ * @param queued      requests currently waiting for a thread
+ * @param active      requests currently being hashed or checked
+ * @param averageWait average time a request spent in the queue
+ */
+public record PasswordEncoderStats(long completed, long rejected, long timedOut, int queued, int active,
+                                   Duration averageWait) {
+}
@@ -1,6 +1,7 @@
 package org.vaadin.builderchallenge.security;
 
 import com.vaadin.flow.spring.security.VaadinWebSecurity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -12,6 +13,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.vaadin.builderchallenge.views.login.LoginView;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,12 +21,19 @@ import java.util.Map;
 @Configuration
 public class SecurityConfiguration extends VaadinWebSecurity {
 
+	/**
+	 * @param threads 0 uses half of the available processors
+	 */
 	@Bean
-	public PasswordEncoder passwordEncoder() {
+	public BoundedPasswordEncoder passwordEncoder(@Value("${security.password.threads:0}") int threads,
+												  @Value("${security.password.queue-capacity:64}") int queueCapacity,
+												  @Value("${security.password.timeout-ms:10000}") long timeoutMs) {
 		Map<String, PasswordEncoder> passwordEncoders = new HashMap<>();
 		passwordEncoders.put("bcrypt", new BCryptPasswordEncoder());
 		passwordEncoders.put("noop", NoOpPasswordEncoder.getInstance());
-		return new DelegatingPasswordEncoder("bcrypt", passwordEncoders);
+		return new BoundedPasswordEncoder(new DelegatingPasswordEncoder("bcrypt", passwordEncoders),
+				threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+				queueCapacity, Duration.ofMillis(timeoutMs));
 	}
 
 	@Override
@@ -0,0 +1,103 @@
+package org.vaadin.builderchallenge.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.vaadin.builderchallenge.data.service.UserChangedEvent;
+
+/**
+ * Least recently used cache of signed in users, so that a user signing in again, or many users signing in at once,
+ * does not query the database every time. Entries expire after a while and the whole cache is cleared whenever a user
+ * is changed, so changed passwords and roles take effect at once.
+ * <p>
+ * Users are copied in and out, as Spring Security erases the password of the user it has authenticated.
+ */
+@Component
+public class UserDetailsCache implements UserCache, MeterBinder {
+
+    private record Entry(UserDetails user, long expiresAt) {
+    }
+
+    private final Map<String, Entry> users;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public UserDetailsCache(@Value("${users.details-cache.max-size:1000}") int maxSize,
+            @Value("${users.details-cache.ttl-seconds:300}") long ttlSeconds) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        if (ttlSeconds < 0) {
+            throw new IllegalArgumentException("ttlSeconds must not be negative");
+        }
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.users = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized UserDetails getUserFromCache(String username) {
+        var entry = users.get(username);
+        if (entry == null || entry.expiresAt() - System.nanoTime() < 0) {
+            if (entry != null) {
+                users.remove(username);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return User.withUserDetails(entry.user()).build();
+    }
+
+    @Override
+    public synchronized void putUserInCache(UserDetails user) {
+        users.put(user.getUsername(), new Entry(User.withUserDetails(user).build(), System.nanoTime() + ttlNanos));
+    }
+
+    @Override
+    public synchronized void removeUserFromCache(String username) {
+        users.remove(username);
+    }
+
+    @EventListener
+    public synchronized void onUserChanged(UserChangedEvent event) {
+        // The event has the id, but the cache is by username, and users change rarely enough to start over
+        users.clear();
+    }
+
+    public synchronized UserDetailsCacheStats stats() {
+        return new UserDetailsCacheStats(hits.sum(), misses.sum(), users.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", this, cache -> cache.stats().hits())
+                .tag("cache", "user-details").tag("result", "hit")
+                .description("Signed in user lookups answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, cache -> cache.stats().misses())
+                .tag("cache", "user-details").tag("result", "miss")
+                .description("Signed in user lookups that went to the database")
+                .register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.stats().size())
+                .tag("cache", "user-details")
+                .description("Signed in users currently cached")
+                .register(registry);
+    }
+}
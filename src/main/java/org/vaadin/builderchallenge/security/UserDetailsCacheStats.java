@@ -0,0 +1,11 @@
+package org.vaadin.builderchallenge.security;
+
+/**
+ * Snapshot of the {@link UserDetailsCache} counters.
+ *
+ * @param hits   lookups answered from the cache
+ * @param misses lookups that went to the database
+ * @param size   users currently cached
+ */
+public record UserDetailsCacheStats(long hits, long misses, int size) {
+}
@@ -8,31 +8,36 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.vaadin.builderchallenge.data.entity.User;
+import org.vaadin.builderchallenge.data.service.UserCredentials;
 import org.vaadin.builderchallenge.data.service.UserRepository;
 
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserDetailsCache userCache;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository, UserDetailsCache userCache) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username);
-        if (user == null) {
-            throw new UsernameNotFoundException("No user present with username: " + username);
-        } else {
-            return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getHashedPassword(),
-                    getAuthorities(user));
+        UserDetails cached = userCache.getUserFromCache(username);
+        if (cached != null) {
+            return cached;
         }
+        UserCredentials user = userRepository.findCredentialsByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("No user present with username: " + username));
+        UserDetails details = new org.springframework.security.core.userdetails.User(user.username(),
+                user.hashedPassword(), getAuthorities(user));
+        userCache.putUserInCache(details);
+        return details;
     }
 
-    private static List<GrantedAuthority> getAuthorities(User user) {
-        return user.getRoles().stream().map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+    private static List<GrantedAuthority> getAuthorities(UserCredentials user) {
+        return user.roles().stream().map(role -> new SimpleGrantedAuthority("ROLE_" + role))
                 .collect(Collectors.toList());
 
     }
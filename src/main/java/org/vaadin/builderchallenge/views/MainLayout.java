@@ -4,6 +4,7 @@ import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.applayout.DrawerToggle;
 import com.vaadin.flow.component.avatar.Avatar;
 import com.vaadin.flow.component.contextmenu.MenuItem;
+import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.Footer;
@@ -12,16 +13,24 @@ import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.Header;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.menubar.MenuBar;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.Scroller;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 import com.vaadin.flow.router.PageTitle;
-import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.server.auth.AccessAnnotationChecker;
 import com.vaadin.flow.theme.lumo.LumoUtility;
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Optional;
 import org.vaadin.builderchallenge.components.appnav.AppNav;
 import org.vaadin.builderchallenge.components.appnav.AppNavItem;
-import org.vaadin.builderchallenge.data.entity.User;
+import org.vaadin.builderchallenge.data.endpoint.ProfilePictureController;
+import org.vaadin.builderchallenge.data.entity.ProfilePicture;
+import org.vaadin.builderchallenge.data.service.AvatarSize;
+import org.vaadin.builderchallenge.data.service.ProfilePictureService;
+import org.vaadin.builderchallenge.data.service.UserSummary;
 import org.vaadin.builderchallenge.security.AuthenticatedUser;
 import org.vaadin.builderchallenge.views.admin.AdminView;
 import org.vaadin.builderchallenge.views.remoteparticipation.RemoteParticipationView;
@@ -37,10 +46,13 @@ public class MainLayout extends AppLayout {
 
     private AuthenticatedUser authenticatedUser;
     private AccessAnnotationChecker accessChecker;
+    private ProfilePictureService profilePictures;
 
-    public MainLayout(AuthenticatedUser authenticatedUser, AccessAnnotationChecker accessChecker) {
+    public MainLayout(AuthenticatedUser authenticatedUser, AccessAnnotationChecker accessChecker,
+            ProfilePictureService profilePictures) {
         this.authenticatedUser = authenticatedUser;
         this.accessChecker = accessChecker;
+        this.profilePictures = profilePictures;
 
         setPrimarySection(Section.DRAWER);
         addDrawerContent();
@@ -93,14 +105,14 @@ public class MainLayout extends AppLayout {
     private Footer createFooter() {
         Footer layout = new Footer();
 
-        Optional<User> maybeUser = authenticatedUser.get();
+        Optional<UserSummary> maybeUser = authenticatedUser.get();
         if (maybeUser.isPresent()) {
-            User user = maybeUser.get();
+            UserSummary user = maybeUser.get();
 
-            Avatar avatar = new Avatar(user.getName());
-            StreamResource resource = new StreamResource("profile-pic",
-                    () -> new ByteArrayInputStream(user.getProfilePicture()));
-            avatar.setImageResource(resource);
+            Avatar avatar = new Avatar(user.name());
+            if (user.hasPicture()) {
+                avatar.setImage(ProfilePictureController.url(user.id(), AvatarSize.XSMALL));
+            }
             avatar.setThemeName("xsmall");
             avatar.getElement().setAttribute("tabindex", "-1");
 
@@ -110,12 +122,13 @@ public class MainLayout extends AppLayout {
             MenuItem userName = userMenu.addItem("");
             Div div = new Div();
             div.add(avatar);
-            div.add(user.getName());
+            div.add(user.name());
             div.add(new Icon("lumo", "dropdown"));
             div.getElement().getStyle().set("display", "flex");
             div.getElement().getStyle().set("align-items", "center");
             div.getElement().getStyle().set("gap", "var(--lumo-space-s)");
             userName.add(div);
+            userName.getSubMenu().addItem("Change picture", e -> openPictureUpload(user, avatar));
             userName.getSubMenu().addItem("Sign out", e -> {
                 authenticatedUser.logout();
             });
@@ -129,6 +142,29 @@ public class MainLayout extends AppLayout {
         return layout;
     }
 
+    private void openPictureUpload(UserSummary user, Avatar avatar) {
+        Dialog dialog = new Dialog();
+        dialog.setHeaderTitle("Change picture");
+        MemoryBuffer buffer = new MemoryBuffer();
+        Upload upload = new Upload(buffer);
+        upload.setAcceptedFileTypes("image/jpeg", "image/png", "image/gif");
+        upload.setMaxFileSize(ProfilePicture.MAX_SIZE);
+        upload.addSucceededListener(event -> {
+            ProfilePicture picture;
+            try (InputStream in = buffer.getInputStream()) {
+                picture = profilePictures.update(user.id(), event.getMIMEType(), in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // The version makes browsers load the new picture instead of reusing the cached one
+            avatar.setImage(ProfilePictureController.url(user.id(), AvatarSize.XSMALL) + "&v=" + picture.getVersion());
+            dialog.close();
+        });
+        upload.addFileRejectedListener(event -> Notification.show(event.getErrorMessage()));
+        dialog.add(upload);
+        dialog.open();
+    }
+
     @Override
     protected void afterNavigation() {
         super.afterNavigation();
@@ -1,6 +1,7 @@
 package org.vaadin.builderchallenge.views.remoteparticipation;
 
 import com.vaadin.flow.component.*;
+import com.vaadin.flow.component.checkbox.Checkbox;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.dialog.DialogVariant;
@@ -10,6 +11,7 @@ import com.vaadin.flow.component.map.configuration.Feature;
 import com.vaadin.flow.component.map.configuration.feature.MarkerFeature;
 import com.vaadin.flow.component.map.configuration.geometry.Point;
 import com.vaadin.flow.component.map.configuration.style.Icon;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
@@ -24,6 +26,7 @@ import org.vaadin.builderchallenge.views.MainLayout;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Optional;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
@@ -74,6 +77,20 @@ public class RemoteParticipationView extends HorizontalLayout {
         location.addValueChangeListener(event -> webRTCSupport.setAttribute(Location.class, event.getValue()));
         sideBar.add(location);
 
+        var presenter = new Checkbox("Presenter");
+        presenter.addValueChangeListener(event -> {
+            if (!event.isFromClient()) {
+                return;
+            }
+            try {
+                webRTCSessionManager.setPresenter(webRTCSupport, event.getValue());
+            } catch (IllegalStateException ex) {
+                Notification.show(ex.getMessage());
+                presenter.setValue(false);
+            }
+        });
+        sideBar.add(presenter);
+
         sideBar.add(selfCamera);
 
         webRTCSupport.setRemoteStreamAddedHandler(sessionId -> {
@@ -81,6 +98,7 @@ public class RemoteParticipationView extends HorizontalLayout {
             viewer.addClassName(LumoUtility.Border.ALL);
             viewer.addClassName(LumoUtility.BorderColor.CONTRAST_5);
             viewer.addClassName(LumoUtility.BorderRadius.SMALL);
+            viewer.setQuality(StreamQuality.THUMBNAIL);
             return viewer;
         });
         webRTCSupport.setRemoteStreamRemovedHandler((sessionId, streamViewer) -> streamViewer.removeFromParent());
@@ -105,25 +123,35 @@ public class RemoteParticipationView extends HorizontalLayout {
         map.addFeatureClickListener(ev -> {
             var clickedLocation = featureLocationMap.get(ev.getFeature());
             if (clickedLocation != null) {
-                webRTCSessionManager
-                        .findSession(session -> clickedLocation.equals(session.getAttribute(Location.class, null)))
+                var viewers = webRTCSessionManager.findSessions(Location.class, clickedLocation).stream()
                         .map(WebRTCSession::id)
-                        .flatMap(webRTCSupport::getRemoteVideo)
-                        .ifPresent(viewer -> {
-                            var dialog = new Dialog();
-                            dialog.addThemeName(DialogVariant.LUMO_NO_PADDING.getVariantName());
-
-                            //Still not possible to do this in a nice way https://github.com/vaadin/flow-components/issues/1173
-                            dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "align-self", "flex-start");
-                            dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "position", "absolute");
-                            dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "left", ev.getMouseDetails().getAbsoluteX() - 200 + "px");
-                            dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "top", ev.getMouseDetails().getAbsoluteY() - 115 + "px");
-
-                            dialog.add(viewer);
-                            viewer.setWidthFull();
-                            dialog.setWidth("500px");
-                            dialog.open();
-                        });
+                        .map(webRTCSupport::getRemoteVideo)
+                        .flatMap(Optional::stream)
+                        .toList();
+                if (!viewers.isEmpty()) {
+                    var dialog = new Dialog();
+                    dialog.addThemeName(DialogVariant.LUMO_NO_PADDING.getVariantName());
+
+                    //Still not possible to do this in a nice way https://github.com/vaadin/flow-components/issues/1173
+                    dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "align-self", "flex-start");
+                    dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "position", "absolute");
+                    dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "left", ev.getMouseDetails().getAbsoluteX() - 200 + "px");
+                    dialog.getElement().executeJs("this.$.overlay.$.overlay.style[$0]=$1", "top", ev.getMouseDetails().getAbsoluteY() - 115 + "px");
+
+                    var quality = viewers.size() == 1 ? StreamQuality.FULL : StreamQuality.MEDIUM;
+                    viewers.forEach(viewer -> {
+                        dialog.add(viewer);
+                        viewer.setWidthFull();
+                        viewer.setQuality(quality);
+                    });
+                    dialog.addOpenedChangeListener(event -> {
+                        if (!event.isOpened()) {
+                            viewers.forEach(viewer -> viewer.setQuality(StreamQuality.THUMBNAIL));
+                        }
+                    });
+                    dialog.setWidth("500px");
+                    dialog.open();
+                }
             }
         });
         map.setSizeFull();
@@ -12,45 +12,78 @@ import lombok.Getter;
 import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
 import org.vaadin.lineawesome.LineAwesomeIcon;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Getter
 public class QuestionComponent extends HorizontalLayout {
-	private final Question question;
-	private final Component dragComponent;
+	private Question question;
+	private final DragComponent dragComponent;
+	private final Map<String, Vote.Value> renderedVotes;
 
-	public QuestionComponent(Question question, UserInfo authUser, BiConsumer<Question, Vote> voteRemover) {
+	public QuestionComponent(Question question, UserInfo authUser, BiConsumer<Question, Vote> voteRemover,
+							 Function<String, String> avatarImages) {
 		this.question = question;
+		this.renderedVotes = votesOf(question);
 		dragComponent = new DragComponent(question);
 		add(dragComponent);
 		dragComponent.addClassName("rcorners");
 
 		if (question.getScore() > 0) {
-			question.getVotes().values().stream()
-					.filter(vote -> Objects.equals(vote.getOriginatorName(), authUser.getId()))
-					.findFirst().ifPresent(vote -> {
-						Component trash = LineAwesomeIcon.TRASH_ALT.create();
-						Button delete = new Button(trash, event -> voteRemover.accept(question, vote));
-						delete.setTooltipText("Delete my vote");
-						add(delete);
-					});
+			Vote ownVote = question.getVotes().get(authUser.getId());
+			if (ownVote != null) {
+				Component trash = LineAwesomeIcon.TRASH_ALT.create();
+				Button delete = new Button(trash, event -> voteRemover.accept(this.question, ownVote));
+				delete.setTooltipText("Delete my vote");
+				add(delete);
+			}
 
 			List<AvatarGroup.AvatarGroupItem> avatars = question.getVotes().keySet().stream()
-					.map(entry -> new AvatarGroup.AvatarGroupItem(entry)).collect(Collectors.toList());
+					.map(voter -> {
+						var avatar = new AvatarGroup.AvatarGroupItem(voter);
+						String image = avatarImages.apply(voter);
+						if (image != null) {
+							avatar.setImage(image);
+						}
+						return avatar;
+					}).collect(Collectors.toList());
 			AvatarGroup avatarGroup = new AvatarGroup(avatars);
+			avatarGroup.setThemeName("xsmall");
 			add(avatarGroup);
 
 		}
 
 	}
 
+	/**
+	 * Returns whether this component still shows the given question as is, i.e. it has the same votes.
+	 */
+	public boolean isUpToDate(Question question) {
+		return renderedVotes.equals(votesOf(question));
+	}
+
+	/**
+	 * Replaces the question instance backing this component with an up-to-date copy of the same question.
+	 */
+	public void setQuestion(Question question) {
+		this.question = question;
+		dragComponent.question = question;
+	}
+
+	private static Map<String, Vote.Value> votesOf(Question question) {
+		Map<String, Vote.Value> votes = new HashMap<>();
+		question.getVotes().forEach((originator, vote) -> votes.put(originator, vote.getValue()));
+		return votes;
+	}
+
 	@Getter
 	public static class DragComponent extends Label implements HasQuestion {
-		private final Question question;
+		private Question question;
 
 		DragComponent(Question question) {
 			super(question.getMessage());
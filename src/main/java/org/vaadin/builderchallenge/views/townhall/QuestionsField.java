@@ -7,27 +7,72 @@ import com.vaadin.flow.component.board.Row;
 import com.vaadin.flow.component.customfield.CustomField;
 import com.vaadin.flow.component.dnd.DragSource;
 import com.vaadin.flow.component.dnd.EffectAllowed;
-import com.vaadin.flow.spring.annotation.SpringComponent;
-import org.apache.commons.lang3.StringUtils;
-import org.springframework.context.annotation.Scope;
+import com.vaadin.flow.component.virtuallist.VirtualList;
+import com.vaadin.flow.data.provider.LazyDataView;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
 import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
-import java.util.function.Consumer;
+import java.util.function.Function;
 
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shows the questions on a board with one row per positive score. Updates are reconciled against the rendered board
+ * by question id and row key, so only added, removed, moved or re-scored questions touch the DOM.
+ * <p>
+ * For large townhalls the field can be {@linkplain #virtualize(RankedQuestions) virtualized}: a virtual list then
+ * renders only the visible window of questions, fetched from the ranking as the user scrolls.
+ */
 public class QuestionsField extends CustomField<List<Question>> {
+
+	/**
+	 * The ranked questions shown in the virtualized mode.
+	 */
+	public interface RankedQuestions {
+		List<Question> fetch(int offset, int limit);
+
+		int size();
+
+		/**
+		 * Returns the distinct positive scores that get a medal, highest first.
+		 */
+		List<Integer> medalScores();
+	}
+
+	private static final Logger log = LoggerFactory.getLogger(QuestionsField.class);
+	private static final String[] MEDALS = {"gold-voted", "silver-voted", "bronce-voted"};
+
 	private final UserInfo authUser;
 	private final BiConsumer<Question, Vote> voteRemover;
-	private Board board;
-	private Map<Integer, Row> rowMap = new HashMap<>();
+	private final Function<String, String> avatarImages;
+	private final Board board = new Board();
+	private final Map<String, Row> rowMap = new HashMap<>();
+	private final Map<Long, QuestionComponent> cellMap = new HashMap<>();
+	private RankedQuestions rankedQuestions;
+	private LazyDataView<Question> virtualView;
+	private List<Integer> medalScores = List.of();
 
-	public QuestionsField(UserInfo authUser, BiConsumer<Question, Vote> voteRemover) {
+	/**
+	 * @param avatarImages returns the avatar image address of a voter by id, or null to show initials instead
+	 */
+	public QuestionsField(UserInfo authUser, BiConsumer<Question, Vote> voteRemover,
+						  Function<String, String> avatarImages) {
 		this.authUser = authUser;
 		this.voteRemover = voteRemover;
+		this.avatarImages = avatarImages;
+		addClassName("board-column-wrapping");
+		add(board);
 	}
 
 	@Override
@@ -35,22 +80,133 @@ public class QuestionsField extends CustomField<List<Question>> {
 		return null;
 	}
 
+	/**
+	 * Replaces the board with a virtual list of the ranked questions. The list is refreshed by
+	 * {@link #setPresentationValue(List)} or {@link #refreshVirtualized()}.
+	 */
+	public void virtualize(RankedQuestions rankedQuestions) {
+		requireNonNull(rankedQuestions, "rankedQuestions must not be null");
+		if (isVirtualized()) {
+			throw new IllegalStateException("Already virtualized");
+		}
+		this.rankedQuestions = rankedQuestions;
+		this.medalScores = rankedQuestions.medalScores();
+		remove(board);
+		rowMap.clear();
+		cellMap.clear();
+
+		VirtualList<Question> virtualList = new VirtualList<>();
+		virtualList.setRenderer(new ComponentRenderer<>(question -> {
+			QuestionComponent cell = createCell(question);
+			int medalIndex = question.getScore() > 0 ? medalScores.indexOf(question.getScore()) : -1;
+			setMedal(cell, medalIndex >= 0 && medalIndex < MEDALS.length ? MEDALS[medalIndex] : null);
+			return cell;
+		}));
+		virtualView = virtualList.setItems(
+				query -> rankedQuestions.fetch(query.getOffset(), query.getLimit()).stream(),
+				query -> rankedQuestions.size());
+		virtualList.setSizeFull();
+		add(virtualList);
+	}
+
+	public boolean isVirtualized() {
+		return rankedQuestions != null;
+	}
+
+	/**
+	 * Re-fetches the visible window of the virtual list.
+	 */
+	public void refreshVirtualized() {
+		if (!isVirtualized()) {
+			throw new IllegalStateException("Not virtualized");
+		}
+		medalScores = rankedQuestions.medalScores();
+		virtualView.refreshAll();
+	}
+
 	@Override
 	protected void setPresentationValue(List<Question> questions) {
-		if (board != null) {
-			remove(board);
+		if (isVirtualized()) {
+			refreshVirtualized();
+			return;
 		}
-		rowMap = new HashMap<>();
-		board = new Board();
+		Map<String, List<QuestionComponent>> layout = new LinkedHashMap<>();
+		Set<Long> presentIds = new HashSet<>();
 		questions.forEach(question -> {
-			assignToRow(question);
+			if (presentIds.add(question.getId())) {
+				layout.computeIfAbsent(rowKey(question), key -> new ArrayList<>()).add(cellFor(question));
+			}
 		});
-		addClassName("board-column-wrapping");
-		add(board);
+
+		cellMap.entrySet().removeIf(entry -> {
+			if (presentIds.contains(entry.getKey())) {
+				return false;
+			}
+			entry.getValue().removeFromParent();
+			return true;
+		});
+		rowMap.entrySet().removeIf(entry -> {
+			if (layout.containsKey(entry.getKey())) {
+				return false;
+			}
+			entry.getValue().removeFromParent();
+			return true;
+		});
+
+		int rowIndex = 0;
+		int medalIndex = 0;
+		for (Map.Entry<String, List<QuestionComponent>> entry : layout.entrySet()) {
+			Row row = rowMap.computeIfAbsent(entry.getKey(), key -> board.addRow());
+			moveTo(board, row, rowIndex++);
+			String medal = isScoreRow(entry.getKey()) && medalIndex < MEDALS.length ? MEDALS[medalIndex++] : null;
+			reconcileRow(row, entry.getValue(), medal);
+		}
+	}
+
+	private void reconcileRow(Row row, List<QuestionComponent> cells, String medal) {
+		row.getChildren()
+				.filter(child -> !cells.contains(child))
+				.toList()
+				.forEach(Component::removeFromParent);
+
+		int cellIndex = 0;
+		for (QuestionComponent cell : cells) {
+			if (!row.equals(cell.getParent().orElse(null))) {
+				cell.removeFromParent();
+				try {
+					row.add(cell);
+				} catch (IllegalArgumentException e) {
+					log.warn("Could not add a question to its board row", e);
+					continue;
+				}
+			}
+			moveTo(row, cell, cellIndex++);
+			setMedal(cell, medal);
+		}
+	}
+
+	private static void setMedal(QuestionComponent cell, String medal) {
+		for (String className : MEDALS) {
+			cell.getDragComponent().setClassName(className, className.equals(medal));
+		}
+	}
+
+	private QuestionComponent cellFor(Question question) {
+		QuestionComponent cell = cellMap.get(question.getId());
+		if (cell != null && cell.isUpToDate(question)) {
+			cell.setQuestion(question);
+			return cell;
+		}
+		if (cell != null) {
+			cell.removeFromParent();
+		}
+		cell = createCell(question);
+		cellMap.put(question.getId(), cell);
+		return cell;
 	}
 
 	private QuestionComponent createCell(Question question) {
-		QuestionComponent questionComponent = new QuestionComponent(question, authUser, voteRemover);
+		QuestionComponent questionComponent = new QuestionComponent(question, authUser, voteRemover, avatarImages);
 		questionComponent.addClassNames("cell", "color");
 
 		DragSource dragSource = DragSource.create(questionComponent.getDragComponent());
@@ -59,41 +215,20 @@ public class QuestionsField extends CustomField<List<Question>> {
 		return questionComponent;
 	}
 
-	private void assignToRow(Question question) {
+	private static void moveTo(Component parent, Component child, int index) {
+		if (parent.getElement().indexOfChild(child.getElement()) != index) {
+			parent.getElement().insertChild(index, child.getElement());
+		}
+	}
+
+	// Questions with the same positive score share a row, unvoted questions get a row each
+	private static String rowKey(Question question) {
 		int score = question.getScore();
+		return score > 0 ? "score-" + score : "question-" + question.getId();
+	}
 
-		QuestionComponent cell = createCell(question);
-		Row row = rowMap.get(score);
-		if (row == null) {
-			Row newRow = board.addRow(cell);
-			if (score > 0) {
-				rowMap.put(score, newRow);
-			}
-		} else {
-			try {
-				row.add(cell);
-			} catch (IllegalArgumentException e) {
-				System.err.println(e.getMessage());
-			}
-		}
-		Component forBorder = cell.getDragComponent();
-		String className = null;
-
-		if (score > 0) {
-			switch (rowMap.size()) {
-				case 1:
-					forBorder.addClassName("gold-voted");
-					break;
-				case 2:
-					forBorder.addClassName("silver-voted");
-					break;
-				case 3:
-					forBorder.addClassName("bronce-voted");
-					break;
-				default:
-					return;
-			}
-		}
+	private static boolean isScoreRow(String rowKey) {
+		return rowKey.startsWith("score-");
 	}
 
 }
@@ -10,73 +10,97 @@ import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.router.RouteAlias;
+import com.vaadin.flow.shared.Registration;
 import jakarta.annotation.security.RolesAllowed;
 import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
-import org.vaadin.builderchallenge.data.entity.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.vaadin.builderchallenge.components.refresh.UiRefreshScheduler;
 import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.endpoint.ProfilePictureController;
+import org.vaadin.builderchallenge.data.service.AvatarSize;
+import org.vaadin.builderchallenge.data.service.UserService;
+import org.vaadin.builderchallenge.data.service.UserSummary;
+import org.vaadin.builderchallenge.data.service.townhall.QuestionCodec;
+import org.vaadin.builderchallenge.data.service.townhall.QuestionKeyIndex;
+import org.vaadin.builderchallenge.data.service.townhall.QuestionRankingService;
+import org.vaadin.builderchallenge.data.service.townhall.VoteEvent;
+import org.vaadin.builderchallenge.data.service.townhall.VoteIngestionService;
 import org.vaadin.builderchallenge.security.AuthenticatedUser;
 import org.vaadin.builderchallenge.views.MainLayout;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 @PageTitle("Townhall Questions")
 @Route(value = "townhall", layout = MainLayout.class)
 //@RouteAlias(value = "", layout = MainLayout.class)
 @RolesAllowed({"ROLE_USER", "ROLE_ADMIN"})
 public class TownhallQuestionsView extends VerticalLayout {
+	private static final String TOPIC = "townhall";
 
 	private final AuthenticatedUser authenticatedUser;
+	private final QuestionRankingService rankingService;
+	private final QuestionKeyIndex keyIndex;
+	private final int virtualizeThreshold;
 	private CollaborationList questions;
-	private static Map<Question, ListKey> questionMap = new ConcurrentHashMap<>();
 
-	public TownhallQuestionsView(AuthenticatedUser authenticatedUser) {
+	public TownhallQuestionsView(AuthenticatedUser authenticatedUser, QuestionRankingService rankingService,
+								 VoteIngestionService voteIngestionService, QuestionKeyIndex keyIndex,
+								 UiRefreshScheduler refreshScheduler, UserService userService,
+								 @Value("${townhall.board.virtualize-threshold:200}") int virtualizeThreshold) {
 		this.authenticatedUser = authenticatedUser;
+		this.rankingService = rankingService;
+		this.keyIndex = keyIndex;
+		this.virtualizeThreshold = virtualizeThreshold;
 
 		var auth = this.authenticatedUser.get();
 		var localUser = new UserInfo(
-				auth.map(User::getUsername).orElse("n/a"),
-				auth.map(User::getName).orElse("?")
+				auth.map(UserSummary::username).orElse("n/a"),
+				auth.map(UserSummary::name).orElse("?")
 		);
+		auth.filter(UserSummary::hasPicture)
+				.ifPresent(user -> localUser.setImage(ProfilePictureController.url(user.id(), AvatarSize.XSMALL)));
 
 		var avatarGroup = new CollaborationAvatarGroup(localUser, "map");
 		add(avatarGroup);
 
-		QuestionsField questionsField = new QuestionsField(localUser, (question, vote) -> {
-			question.removeVote(vote);
-			reorderList(question);
-		});
+		QuestionsField questionsField = new QuestionsField(localUser, (question, vote) ->
+				voteIngestionService.submit(VoteEvent.retract(TOPIC, question.getId(), vote.getOriginatorName())),
+				voter -> userService.getSummary(voter)
+						.filter(UserSummary::hasPicture)
+						.map(user -> ProfilePictureController.url(user.id(), AvatarSize.XSMALL))
+						.orElse(null));
 		questionsField.setSizeFull();
+		UiRefreshScheduler.Refresher refresher = refreshScheduler.create(questionsField, () -> refresh(questionsField));
 
-		CollaborationEngine.getInstance().openTopicConnection(this, "townhall",
+		CollaborationEngine.getInstance().openTopicConnection(this, TOPIC,
 				localUser, connection -> {
 					questions = connection.getNamedList("questions");
-					questions.subscribe(event ->
-							questionsField.setPresentationValue(questions.getItems(Question.class)));
-					return null;
+					if (keyIndex.open(TOPIC)) {
+						fillIndex();
+					}
+					questions.subscribe(event -> refresher.request());
+					Registration publisher = voteIngestionService.addPublisher(TOPIC, placements ->
+							placements.forEach(placement -> reorderList(placement.question())));
+					return () -> {
+						publisher.remove();
+						keyIndex.close(TOPIC);
+					};
 				});
 
 		add(new Label("Vote by dropping a question:"));
-		VotingDrop votingDrop = new VotingDrop(localUser, (question, value) -> {
-			question.setVote(localUser, value);
-			reorderList(question);
-		});
+		VotingDrop votingDrop = new VotingDrop(localUser, (question, vote) ->
+				voteIngestionService.submit(VoteEvent.cast(TOPIC, question.getId(), localUser.getId(), vote.getValue())));
 
 		var textInput = new TextArea("Enter Your Question:");
 		textInput.setWidthFull();
 		textInput.addValueChangeListener(event -> {
 			String message = textInput.getValue();
 			if (StringUtils.isNotEmpty(message)) {
-				Question newQuestion = new Question(localUser, textInput.getValue());
-				ListOperationResult<Void> result = questions.insertLast(newQuestion);
-				questionMap.put(newQuestion, result.getKey());
-				result.getCompletableFuture().thenAccept(v ->
-						questionsField.setPresentationValue(questions.getItems(Question.class))
-				);
+				Question newQuestion = rankingService.ask(TOPIC, localUser, textInput.getValue());
+				ListOperationResult<Void> result = questions.insertLast(QuestionCodec.encodeToString(newQuestion));
+				keyIndex.put(TOPIC, newQuestion.getId(), result.getKey());
 				textInput.setValue("");
 			}
 		});
@@ -93,25 +117,81 @@ public class TownhallQuestionsView extends VerticalLayout {
 		setDefaultHorizontalComponentAlignment(Alignment.START);
 	}
 
+	// Large townhalls switch to the virtualized field for good, which reads the ranking instead of the whole list
+	private void refresh(QuestionsField questionsField) {
+		if (!questionsField.isVirtualized() && rankingService.size(TOPIC) > virtualizeThreshold) {
+			questionsField.virtualize(new QuestionsField.RankedQuestions() {
+				@Override
+				public List<Question> fetch(int offset, int limit) {
+					return rankingService.page(TOPIC, offset, limit);
+				}
+
+				@Override
+				public int size() {
+					return rankingService.size(TOPIC);
+				}
+
+				@Override
+				public List<Integer> medalScores() {
+					return rankingService.topScores(TOPIC, 3);
+				}
+			});
+		}
+		if (questionsField.isVirtualized()) {
+			questionsField.refreshVirtualized();
+		} else {
+			questionsField.setPresentationValue(QuestionCodec.decodeAll(questions.getItems(String.class)));
+		}
+	}
+
+	// The topic starts empty after a restart, so the first connection fills it with the recovered questions. If the
+	// list outlived the last view, its entries are indexed again instead.
+	private void fillIndex() {
+		if (questions.getKeys().findAny().isEmpty()) {
+			rankingService.page(TOPIC, 0, rankingService.size(TOPIC)).forEach(question ->
+					keyIndex.put(TOPIC, question.getId(), questions.insertLast(QuestionCodec.encodeToString(question)).getKey()));
+		} else {
+			questions.getKeys().forEach(key ->
+					keyIndex.put(TOPIC, QuestionCodec.decode(questions.getItem(key, String.class)).getId(), key));
+		}
+	}
+
 	private void reorderList(Question trigger) {
-		int newScore = trigger.getScore();
-
-		questions.remove(questionMap.get(trigger)).thenAccept(aBoolean -> {
-			List<Question> list = questions.getItems(Question.class);
-			Optional<ListKey> nextKey = list.stream().filter(question -> question.getScore() < newScore)
-					.map(question -> questionMap.get(question))
-					.findFirst();
-			final ListKey newKey;
-			if (nextKey.isPresent()) {
-				ListOperationResult<Boolean> result = questions.insertBefore(nextKey.get(), trigger);
-				newKey = result.getKey();
+		ListKey oldKey = keyIndex.get(TOPIC, trigger.getId()).orElse(null);
+		if (oldKey == null) {
+			insertRanked(trigger.getId());
+		} else {
+			// Whoever removes the old entry re-inserts it, so concurrent votes on one question don't duplicate it
+			questions.remove(oldKey).thenAccept(removed -> {
+				if (removed) {
+					insertRanked(trigger.getId());
+				}
+			});
+		}
+	}
+
+	// Inserts the question before the one ranked after it; retries if that one was being moved at the same time
+	private void insertRanked(Long questionId) {
+		rankingService.placementOf(TOPIC, questionId).ifPresentOrElse(placement -> {
+			ListKey nextKey = placement.next() == null ? null
+					: keyIndex.get(TOPIC, placement.next().getId()).orElse(null);
+			if (nextKey == null) {
+				ListOperationResult<Void> result = questions.insertLast(QuestionCodec.encodeToString(placement.question()));
+				keyIndex.put(TOPIC, questionId, result.getKey());
 			} else {
-				ListOperationResult<Void> result = questions.insertLast(trigger);
-				newKey = result.getKey();
+				ListOperationResult<Boolean> result = questions.insertBefore(nextKey,
+						QuestionCodec.encodeToString(placement.question()));
+				keyIndex.put(TOPIC, questionId, result.getKey());
+				result.getCompletableFuture().thenAccept(inserted -> {
+					if (!inserted) {
+						insertRanked(questionId);
+					}
+				});
 			}
-			questionMap.put(trigger, newKey);
+		}, () -> {
+			// The question is gone, so its removed entry must not be looked up any more
+			keyIndex.remove(TOPIC, questionId);
 		});
-
 	}
 
 	@Data
@@ -0,0 +1,120 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the selective forwarding topology in a loop inside the JVM: sessions signal with the relay through the
+ * manager, and the packets one of them publishes come out of the sinks of the others.
+ */
+class InJvmMediaRelayTest {
+
+    private InJvmMediaRelay relay;
+    private TestSignaling signaling;
+
+    @BeforeEach
+    void setUp() {
+        relay = new InJvmMediaRelay();
+        signaling = TestSignaling.selectiveForwarding(relay);
+    }
+
+    @AfterEach
+    void tearDown() {
+        signaling.close();
+    }
+
+    @Test
+    void sessionsOnlyConnectToTheRelayWhichIsNotAParticipant() throws Exception {
+        var alice = new TestWebRTCSession();
+        var bob = new TestWebRTCSession();
+        signaling.manager.register(alice);
+        signaling.manager.register(bob);
+        signaling.awaitQuiescence(Duration.ofSeconds(10));
+
+        assertEquals(Map.of(relay.id(), 1), alice.invitations);
+        assertEquals(Map.of(relay.id(), 1), bob.invitations);
+        assertEquals(Set.of(alice.id(), bob.id()), signaling.manager.sessionIds());
+        assertEquals(relay.id(), signaling.manager.mediaRelayId().orElseThrow());
+        assertTrue(signaling.manager.getSession(relay.id()).isEmpty());
+        assertTrue(signaling.manager.findSession(session -> session.id().equals(relay.id())).isEmpty());
+    }
+
+    @Test
+    void relayAnswersOffersAndForwardsTheSubscribedLayer() throws Exception {
+        var alice = new TestWebRTCSession();
+        var bob = new TestWebRTCSession();
+        var received = new CopyOnWriteArrayList<String>();
+        relay.attach(bob.id(), (publisherId, layer, packet) -> received.add(
+                publisherId + "/" + layer.rid() + "/" + StandardCharsets.UTF_8.decode(packet)));
+        signaling.manager.register(alice);
+        signaling.manager.register(bob);
+        connect(alice);
+        connect(bob);
+
+        signaling.manager.setSubscribed(bob, alice.id(), true);
+        signaling.manager.requestQuality(bob, alice.id(), StreamQuality.THUMBNAIL);
+        assertEquals(0, relay.forward(alice.id(), StreamQuality.FULL, packet("full")));
+        assertEquals(1, relay.forward(alice.id(), StreamQuality.THUMBNAIL, packet("thumbnail")));
+        assertEquals(List.of(alice.id() + "/thumbnail/thumbnail"), received);
+
+        signaling.manager.setSubscribed(bob, alice.id(), false);
+        assertEquals(0, relay.forward(alice.id(), StreamQuality.THUMBNAIL, packet("paused")));
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void nothingIsForwardedToSessionsThatAreNotConnectedOrToPublishersThatLeft() throws Exception {
+        var alice = new TestWebRTCSession();
+        var bob = new TestWebRTCSession();
+        relay.attach(bob.id(), (publisherId, layer, packet) -> fail("Unexpected packet from " + publisherId));
+        signaling.manager.register(alice);
+        signaling.manager.register(bob);
+        connect(alice);
+        signaling.manager.setSubscribed(bob, alice.id(), true);
+
+        assertEquals(0, relay.forward(alice.id(), StreamQuality.FULL, packet("bob has not connected")));
+
+        connect(bob);
+        signaling.manager.unregister(alice);
+        assertEquals(0, relay.forward(alice.id(), StreamQuality.FULL, packet("alice has left")));
+        signaling.manager.setSubscribed(bob, alice.id(), true);
+        assertEquals(0, relay.forward(alice.id(), StreamQuality.FULL, packet("alice has left")));
+    }
+
+    @Test
+    void offersFromUnknownSessionsAreNotAnswered() throws Exception {
+        var stranger = new TestWebRTCSession();
+        signaling.manager.sendVideoOffer(stranger, relay.id(), TestSignaling.message(stranger, relay.id()));
+        signaling.awaitQuiescence(Duration.ofSeconds(10));
+
+        assertEquals(List.of(), stranger.answers);
+    }
+
+    // What the client does when it is invited to the relay
+    private void connect(TestWebRTCSession session) throws InterruptedException {
+        signaling.manager.sendVideoOffer(session, relay.id(), TestSignaling.message(session, relay.id()));
+        signaling.awaitQuiescence(Duration.ofSeconds(10));
+        assertEquals(1, session.answers.size(), session + " answers");
+        var answer = session.answers.get(0);
+        assertSame(relay, answer.source());
+        var payload = (JsonObject) answer.payload();
+        assertEquals(relay.id().toString(), payload.getString("sender"));
+        assertEquals(session.id().toString(), payload.getString("target"));
+    }
+
+    private static ByteBuffer packet(String content) {
+        return StandardCharsets.UTF_8.encode(content);
+    }
+}
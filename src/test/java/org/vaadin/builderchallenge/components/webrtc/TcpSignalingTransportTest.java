@@ -0,0 +1,335 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs several nodes, each with its own session manager, against each other on localhost.
+ */
+class TcpSignalingTransportTest {
+
+    private static final String SECRET = "test-secret";
+    private static final InetSocketAddress LOOPBACK = new InetSocketAddress("127.0.0.1", 0);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (var resource : resources.reversed()) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void nodesShareSessionsAndRelaySignaling() throws Exception {
+        var first = node(List.of(), SECRET);
+        var second = node(List.of(address(first)), SECRET);
+        var a = new TestWebRTCSession();
+        var b = new TestWebRTCSession();
+        first.manager.register(a);
+        second.manager.register(b);
+        await(() -> first.manager.getSession(b.id()).isPresent() && second.manager.getSession(a.id()).isPresent());
+
+        first.manager.sendVideoOffer(a, b.id(), TestSignaling.message(a, b.id()));
+        await(() -> b.offers.size() == 1);
+        assertEquals(a.id(), b.offers.get(0).source().id());
+
+        second.manager.unregister(b);
+        await(() -> first.manager.getSession(b.id()).isEmpty());
+    }
+
+    @Test
+    void peerWithoutTheSecretIsNotAdmitted() throws Exception {
+        var first = node(List.of(), SECRET);
+        var intruder = node(List.of(address(first)), "wrong-secret");
+        var session = new TestWebRTCSession();
+        intruder.manager.register(session);
+
+        Thread.sleep(1000);
+        assertTrue(first.manager.getSession(session.id()).isEmpty());
+    }
+
+    @Test
+    void helloReplayedOnAnotherConnectionIsRejected() throws Exception {
+        var first = node(List.of(), SECRET);
+        var session = UUID.randomUUID();
+        try (var peer = RawPeer.connect(address(first), "rogue", session);
+             var replay = RawPeer.open(address(first), "rogue")) {
+            await(() -> first.manager.getSession(session).isPresent());
+
+            // Same node, same nonce, but the proof was made for the other connection's challenge
+            assertEquals("challenge", replay.read().getString("type"));
+            replay.write(peer.hello);
+            var replayedSession = UUID.randomUUID();
+            replay.announce(replayedSession);
+
+            assertEquals(List.of(), replay.readUntilClosed(), "The node must not sign anything for an unproven peer");
+            assertTrue(first.manager.getSession(replayedSession).isEmpty());
+        }
+    }
+
+    @Test
+    void acceptorProofCannotBeReflectedAsAnInitiatorProof() throws Exception {
+        var first = node(List.of(), SECRET);
+        var secret = new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        try (var peer = RawPeer.open(address(first), "rogue")) {
+            var challenge = peer.read();
+            var hello = peer.frame("hello");
+            // What the node would send back as the accepting side, which a node must never take from a dialer
+            hello.put("proof", TcpSignalingTransport.proof(secret, "acceptor", RawPeer.NONCE,
+                    challenge.getString("nonce"), "rogue", challenge.getString("node")));
+            peer.write(hello);
+
+            assertEquals(List.of(), peer.readUntilClosed());
+        }
+    }
+
+    @Test
+    void frameClaimingAnotherNodeClosesTheConnection() throws Exception {
+        var first = node(List.of(), SECRET);
+        try (var peer = RawPeer.connect(address(first), "rogue", UUID.randomUUID())) {
+            var forged = peer.frame("session-up");
+            forged.put("node", "somebody-else");
+            var session = UUID.randomUUID();
+            forged.put("session", session.toString());
+            peer.write(forged);
+
+            assertThrows(EOFException.class, () -> {
+                while (true) {
+                    peer.read();
+                }
+            });
+            assertTrue(first.manager.getSession(session).isEmpty());
+        }
+    }
+
+    @Test
+    void envelopesAreOnlyAcceptedForSessionsOfTheSendingNode() throws Exception {
+        var first = node(List.of(), SECRET);
+        var a = new TestWebRTCSession();
+        var b = new TestWebRTCSession();
+        first.manager.register(a);
+        first.manager.register(b);
+        var remote = UUID.randomUUID();
+        try (var peer = RawPeer.connect(address(first), "rogue", remote)) {
+            await(() -> first.manager.getSession(remote).isPresent());
+            var remoteSession = first.manager.getSession(remote).orElseThrow();
+
+            // Pretends to be a session of the other node, then sends a message that names the wrong sender
+            peer.envelope(new SignalingEnvelope(SignalingEnvelope.Type.VIDEO_OFFER, a.id(), b.id(),
+                    TestSignaling.message(a, b.id())));
+            peer.envelope(new SignalingEnvelope(SignalingEnvelope.Type.VIDEO_OFFER, remote, b.id(),
+                    TestSignaling.message(a, b.id())));
+            peer.envelope(new SignalingEnvelope(SignalingEnvelope.Type.VIDEO_OFFER, remote, b.id(),
+                    TestSignaling.message(remoteSession, b.id())));
+
+            await(() -> !b.offers.isEmpty());
+            first.awaitQuiescence(TIMEOUT);
+            assertEquals(1, b.offers.size());
+            assertEquals(remote, b.offers.get(0).source().id());
+        }
+    }
+
+    @Test
+    void peerThatStopsReadingIsDisconnectedWithoutBlockingSenders() throws Exception {
+        var first = node(List.of(), SECRET);
+        var stalled = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var stalledNode = new TcpSignalingTransport(LOOPBACK, List.of(address(first)), SECRET);
+        var remote = UUID.randomUUID();
+        stalledNode.publishSessionRegistered(remote);
+        stalledNode.start(new BlockingListener(stalled, release));
+        resources.add(stalledNode::stop);
+        resources.add(release::countDown);
+        var a = new TestWebRTCSession();
+        first.manager.register(a);
+        assertTrue(stalled.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        await(() -> first.manager.getSession(remote).isPresent());
+
+        // Far more than the socket buffers hold, so the writes would block if the senders did them
+        for (var i = 0; i < 500; i++) {
+            var offer = TestSignaling.message(a, remote);
+            offer.put("sdp", "x".repeat(64 * 1024));
+            first.manager.sendVideoOffer(a, remote, offer);
+        }
+        first.awaitQuiescence(TIMEOUT);
+        await(() -> first.manager.getSession(remote).isEmpty());
+        first.manager.register(new TestWebRTCSession());
+    }
+
+    private TestSignaling node(List<InetSocketAddress> peers, String secret) {
+        var signaling = new TestSignaling(new TcpSignalingTransport(LOOPBACK, peers, secret), JoinTopology.STAGE, 0);
+        resources.add(signaling);
+        return signaling;
+    }
+
+    private static InetSocketAddress address(TestSignaling node) {
+        return ((TcpSignalingTransport) node.transport).localAddress();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within " + TIMEOUT);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Stops reading from its connection as soon as the first session is announced.
+     */
+    private record BlockingListener(CountDownLatch stalled, CountDownLatch release) implements SignalingTransport.Listener {
+
+        @Override
+        public void onRemoteSessionRegistered(String nodeId, UUID sessionId) {
+            stalled.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onRemoteSessionUnregistered(String nodeId, UUID sessionId) {
+        }
+
+        @Override
+        public void onNodeLeft(String nodeId) {
+        }
+
+        @Override
+        public void onEnvelope(String nodeId, SignalingEnvelope envelope) {
+        }
+    }
+
+    /**
+     * Speaks the wire protocol directly, to send frames a well-behaved node never would.
+     */
+    private static final class RawPeer implements AutoCloseable {
+
+        private static final String NONCE = "raw-peer-nonce";
+
+        private final SocketChannel channel;
+        private final String nodeId;
+        private JsonObject hello;
+
+        private RawPeer(SocketChannel channel, String nodeId) {
+            this.channel = channel;
+            this.nodeId = nodeId;
+        }
+
+        /**
+         * Dials the node, answers its challenge with a valid hello and announces the session.
+         */
+        static RawPeer connect(InetSocketAddress address, String nodeId, UUID session) throws IOException {
+            var peer = open(address, nodeId);
+            var challenge = peer.read();
+            var secret = new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+            var hello = peer.frame("hello");
+            hello.put("proof", TcpSignalingTransport.proof(secret, "initiator", NONCE, challenge.getString("nonce"),
+                    nodeId, challenge.getString("node")));
+            peer.write(hello);
+            peer.hello = hello;
+            peer.announce(session);
+            return peer;
+        }
+
+        /**
+         * Dials the node and sends the challenge, but nothing else.
+         */
+        static RawPeer open(InetSocketAddress address, String nodeId) throws IOException {
+            var peer = new RawPeer(SocketChannel.open(address), nodeId);
+            var challenge = peer.frame("challenge");
+            challenge.put("nonce", NONCE);
+            peer.write(challenge);
+            return peer;
+        }
+
+        void announce(UUID session) throws IOException {
+            var frame = frame("sessions");
+            var sessions = Json.createArray();
+            sessions.set(0, session.toString());
+            frame.put("sessions", sessions);
+            write(frame);
+        }
+
+        /**
+         * Reads until the node closes the connection, and returns the types of the frames read until then.
+         */
+        List<String> readUntilClosed() {
+            var types = new ArrayList<String>();
+            try {
+                while (true) {
+                    types.add(read().getString("type"));
+                }
+            } catch (IOException ex) {
+                // Closed, or reset because the node did not read what was sent last
+                return types;
+            }
+        }
+
+        JsonObject frame(String type) {
+            var frame = Json.createObject();
+            frame.put("node", nodeId);
+            frame.put("type", type);
+            return frame;
+        }
+
+        void envelope(SignalingEnvelope envelope) throws IOException {
+            var frame = frame("envelope");
+            frame.put("envelope", envelope.toJson());
+            write(frame);
+        }
+
+        void write(JsonObject frame) throws IOException {
+            var bytes = frame.toJson().getBytes(StandardCharsets.UTF_8);
+            var buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        JsonObject read() throws IOException {
+            var header = readFully(ByteBuffer.allocate(Integer.BYTES));
+            var body = readFully(ByteBuffer.allocate(header.getInt()));
+            return Json.parse(new String(body.array(), StandardCharsets.UTF_8));
+        }
+
+        private ByteBuffer readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            return buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
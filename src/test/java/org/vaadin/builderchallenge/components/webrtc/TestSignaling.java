@@ -0,0 +1,91 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * A {@link WebRTCSessionManager} wired up with its real collaborators, the way Spring would, for tests that run
+ * without an application context.
+ */
+final class TestSignaling implements AutoCloseable {
+
+    final SignalingDispatcher dispatcher = new SignalingDispatcher();
+    final SignalingTransport transport;
+    final InviteScheduler inviteScheduler;
+    final ICECandidateRelay iceCandidateRelay;
+    final WebRTCSessionManager manager;
+
+    TestSignaling(SignalingTransport transport, JoinTopology topology, int fullMeshLimit) {
+        this(transport, topology, fullMeshLimit, new StaticListableBeanFactory());
+    }
+
+    private TestSignaling(SignalingTransport transport, JoinTopology topology, int fullMeshLimit,
+                          StaticListableBeanFactory beans) {
+        this.transport = transport;
+        inviteScheduler = new InviteScheduler(dispatcher, 1024, 1);
+        iceCandidateRelay = new ICECandidateRelay(dispatcher, 5, 16);
+        manager = new WebRTCSessionManager(inviteScheduler, iceCandidateRelay, dispatcher, transport,
+                beans.getBeanProvider(MediaRelay.class), topology, fullMeshLimit, 4);
+        manager.startTransport();
+    }
+
+    static TestSignaling fullMesh() {
+        return new TestSignaling(new InJvmSignalingTransport(UUID.randomUUID().toString()), JoinTopology.FULL_MESH,
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Nobody is invited until a session becomes a presenter.
+     */
+    static TestSignaling stage() {
+        return new TestSignaling(new InJvmSignalingTransport(UUID.randomUUID().toString()), JoinTopology.STAGE, 0);
+    }
+
+    /**
+     * Every session connects to the given relay only.
+     */
+    static TestSignaling selectiveForwarding(MediaRelay relay) {
+        var beans = new StaticListableBeanFactory();
+        beans.addBean("mediaRelay", relay);
+        return new TestSignaling(new InJvmSignalingTransport(UUID.randomUUID().toString()),
+                JoinTopology.SELECTIVE_FORWARDING, 0, beans);
+    }
+
+    /**
+     * Waits until every scheduled invitation and dispatched message has been delivered.
+     */
+    void awaitQuiescence(Duration timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        var quietChecks = 0;
+        while (quietChecks < 3) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Signaling did not settle within " + timeout + ", "
+                        + inviteScheduler.pendingCount() + " invitations pending, " + manager.signalingStats());
+            }
+            var stats = manager.signalingStats();
+            var quiet = inviteScheduler.pendingCount() == 0 && stats.queueDepth() == 0;
+            quietChecks = quiet ? quietChecks + 1 : 0;
+            Thread.sleep(10);
+        }
+    }
+
+    static JsonObject message(WebRTCSession source, UUID recipient) {
+        var message = Json.createObject();
+        message.put("sender", source.id().toString());
+        message.put("target", recipient.toString());
+        message.put("sdp", "v=0");
+        return message;
+    }
+
+    @Override
+    public void close() {
+        manager.stopTransport();
+        inviteScheduler.shutdown();
+        iceCandidateRelay.shutdown();
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.JsonValue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Session without a UI that records what is delivered to it. Given a manager, it reports its attribute changes to it
+ * the way {@link WebRTCSupport} does.
+ */
+class TestWebRTCSession implements WebRTCSession {
+
+    private final UUID id;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final WebRTCSessionManager manager;
+    final Map<UUID, Integer> invitations = new ConcurrentHashMap<>();
+    final List<SignalingMessage> offers = new CopyOnWriteArrayList<>();
+    final List<SignalingMessage> answers = new CopyOnWriteArrayList<>();
+    final List<SignalingMessage> iceCandidates = new CopyOnWriteArrayList<>();
+    final LongAdder deliveries = new LongAdder();
+
+    TestWebRTCSession() {
+        this(UUID.randomUUID());
+    }
+
+    TestWebRTCSession(UUID id) {
+        this(id, null);
+    }
+
+    TestWebRTCSession(WebRTCSessionManager manager) {
+        this(UUID.randomUUID(), manager);
+    }
+
+    private TestWebRTCSession(UUID id, WebRTCSessionManager manager) {
+        this.id = id;
+        this.manager = manager;
+    }
+
+    @Override
+    public UUID id() {
+        return id;
+    }
+
+    @Override
+    public void invite(WebRTCSession target) {
+        invitations.merge(target.id(), 1, Integer::sum);
+        deliveries.increment();
+    }
+
+    @Override
+    public void inviteAll(Collection<? extends WebRTCSession> targets) {
+        targets.forEach(this::invite);
+    }
+
+    @Override
+    public void handleInvitation(WebRTCSession source, JsonValue message) {
+        offers.add(new SignalingMessage(source, message));
+        deliveries.increment();
+    }
+
+    @Override
+    public void handleInvitationAnswer(WebRTCSession source, JsonValue message) {
+        answers.add(new SignalingMessage(source, message));
+        deliveries.increment();
+    }
+
+    @Override
+    public void handleNewICECandidate(WebRTCSession source, JsonValue message) {
+        iceCandidates.add(new SignalingMessage(source, message));
+        deliveries.increment();
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        synchronized (attributes) {
+            var oldValue = value == null ? attributes.remove(name) : attributes.put(name, value);
+            if (manager != null && !Objects.equals(oldValue, value)) {
+                manager.attributeChanged(this, name, oldValue, value);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String name, T defaultValue) {
+        synchronized (attributes) {
+            return (T) attributes.getOrDefault(name, defaultValue);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        synchronized (attributes) {
+            return Map.copyOf(attributes);
+        }
+    }
+
+    @Override
+    public void withAttributes(Consumer<Map<String, Object>> action) {
+        synchronized (attributes) {
+            action.accept(Map.copyOf(attributes));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TestWebRTCSession{%s}".formatted(id);
+    }
+}
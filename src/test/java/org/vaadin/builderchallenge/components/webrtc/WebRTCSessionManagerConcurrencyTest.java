@@ -0,0 +1,158 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebRTCSessionManagerConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int SESSIONS_PER_THREAD = 50;
+    private static final int CHURN_ITERATIONS = 2000;
+
+    private TestSignaling signaling;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        signaling.close();
+    }
+
+    @Test
+    void concurrentJoinsInviteEveryPairExactlyOnce() throws Exception {
+        signaling = TestSignaling.fullMesh();
+        var sessions = ConcurrentHashMap.<TestWebRTCSession>newKeySet();
+        runConcurrently(() -> {
+            for (var i = 0; i < SESSIONS_PER_THREAD; i++) {
+                var session = new TestWebRTCSession();
+                signaling.manager.register(session);
+                sessions.add(session);
+            }
+            return null;
+        });
+        signaling.awaitQuiescence(Duration.ofSeconds(30));
+
+        var all = List.copyOf(sessions);
+        assertEquals(THREADS * SESSIONS_PER_THREAD, signaling.manager.sessionIds().size());
+        for (var i = 0; i < all.size(); i++) {
+            for (var j = i + 1; j < all.size(); j++) {
+                var a = all.get(i);
+                var b = all.get(j);
+                var invitations = a.invitations.getOrDefault(b.id(), 0) + b.invitations.getOrDefault(a.id(), 0);
+                assertEquals(1, invitations, a + " and " + b + " invitations");
+            }
+        }
+    }
+
+    @Test
+    void concurrentRegisterAndUnregisterKeepRegistryAndIndexConsistent() throws Exception {
+        // Without presenters nobody is invited, so this only exercises the registry and the attribute index
+        signaling = TestSignaling.stage();
+        var remaining = ConcurrentHashMap.<TestWebRTCSession>newKeySet();
+        runConcurrently(() -> {
+            var random = ThreadLocalRandom.current();
+            var own = new ArrayList<TestWebRTCSession>();
+            for (var i = 0; i < CHURN_ITERATIONS; i++) {
+                if (own.isEmpty() || random.nextInt(3) > 0) {
+                    var session = new TestWebRTCSession();
+                    session.setAttribute("room", "room-" + random.nextInt(4));
+                    signaling.manager.register(session);
+                    own.add(session);
+                } else {
+                    signaling.manager.unregister(own.remove(random.nextInt(own.size())));
+                }
+            }
+            remaining.addAll(own);
+            return null;
+        });
+        signaling.awaitQuiescence(Duration.ofSeconds(60));
+
+        assertEquals(ids(remaining), signaling.manager.sessionIds());
+        for (var room = 0; room < 4; room++) {
+            var name = "room-" + room;
+            var expected = remaining.stream().filter(session -> name.equals(session.getAttribute("room", null)))
+                    .collect(Collectors.toSet());
+            assertEquals(ids(expected), ids(signaling.manager.findSessions("room", name)), name);
+        }
+
+        remaining.forEach(signaling.manager::unregister);
+        assertEquals(Set.of(), signaling.manager.sessionIds());
+        assertEquals(Set.of(), signaling.manager.findSessions("room", "room-0"));
+    }
+
+    @Test
+    void attributesChangedWhileRegisteringAreIndexedWithTheirLatestValue() throws Exception {
+        signaling = TestSignaling.stage();
+        var sessions = new ArrayList<TestWebRTCSession>();
+        for (var i = 0; i < CHURN_ITERATIONS; i++) {
+            var session = new TestWebRTCSession(signaling.manager);
+            session.setAttribute("room", "lobby");
+            sessions.add(session);
+        }
+        // Half of the threads register the sessions while the other half move the same sessions to another room
+        var next = new AtomicInteger();
+        runConcurrently(() -> {
+            var mover = next.getAndIncrement() % 2 == 1;
+            for (var session : sessions) {
+                if (mover) {
+                    session.setAttribute("room", "stage");
+                } else if (signaling.manager.getSession(session.id()).isEmpty()) {
+                    try {
+                        signaling.manager.register(session);
+                    } catch (IllegalArgumentException alreadyRegistered) {
+                        // Another registering thread won
+                    }
+                }
+            }
+            return null;
+        });
+
+        assertEquals(Set.of(), signaling.manager.findSessions("room", "lobby"));
+        assertEquals(ids(Set.copyOf(sessions)), ids(signaling.manager.findSessions("room", "stage")));
+
+        sessions.forEach(signaling.manager::unregister);
+        assertEquals(Set.of(), signaling.manager.findSessions("room", "stage"));
+    }
+
+    private void runConcurrently(Callable<Void> task) throws Exception {
+        var start = new CountDownLatch(1);
+        var futures = new ArrayList<Future<Void>>();
+        for (var i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        for (var future : futures) {
+            future.get();
+        }
+    }
+
+    private static Set<Object> ids(Set<? extends WebRTCSession> sessions) {
+        return sessions.stream().map(WebRTCSession::id).collect(Collectors.toCollection(HashSet::new));
+    }
+}
@@ -0,0 +1,202 @@
+package org.vaadin.builderchallenge.components.webrtc;
+
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Headless load harness: thousands of synthetic sessions join a stage and negotiate with every presenter, while as
+ * many short-lived sessions join and leave again. The sessions handle their messages the way {@link WebRTCSupport}
+ * does, in a UI access task, and the reported latency runs from sending a message until that task has run. The
+ * throughput, the latency and the heap allocated by all threads are reported. It runs with {@code mvn -Pload test},
+ * the load is raised with {@code -Dwebrtc.load.sessions} and {@code -Dwebrtc.load.churn}.
+ */
+@Tag("load")
+class WebRTCSessionManagerLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(WebRTCSessionManagerLoadTest.class);
+    private static final int SESSIONS = Integer.getInteger("webrtc.load.sessions", 2000);
+    private static final int CHURN = Integer.getInteger("webrtc.load.churn", SESSIONS);
+    private static final int PRESENTERS = 4;
+    private static final int ICE_CANDIDATES = 3;
+    private static final int THREADS = 8;
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    private final long origin = System.nanoTime();
+    private final LatencyHistogram accessLatency = new LatencyHistogram();
+    private TestSignaling signaling;
+    private ExecutorService executor;
+    // Stands in for the request threads that run the UI access tasks
+    private ExecutorService uiExecutor;
+
+    @BeforeEach
+    void setUp() {
+        signaling = TestSignaling.stage();
+        executor = Executors.newFixedThreadPool(THREADS);
+        uiExecutor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        uiExecutor.shutdownNow();
+        signaling.close();
+    }
+
+    @Test
+    void viewersNegotiateWithEveryPresenterWhileSessionsComeAndGo() throws Exception {
+        var manager = signaling.manager;
+        var presenters = new ArrayList<UiSession>();
+        for (var i = 0; i < PRESENTERS; i++) {
+            var presenter = new UiSession();
+            manager.register(presenter);
+            manager.setPresenter(presenter, true);
+            presenters.add(presenter);
+        }
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        var start = System.nanoTime();
+        var viewers = ConcurrentHashMap.<UiSession>newKeySet();
+        var tasks = new ArrayList<Callable<Void>>();
+        for (var i = 0; i < Math.max(SESSIONS, CHURN); i++) {
+            if (i < SESSIONS) {
+                tasks.add(() -> {
+                    var viewer = new UiSession();
+                    manager.register(viewer);
+                    viewers.add(viewer);
+                    for (var presenter : presenters) {
+                        negotiate(viewer, presenter);
+                    }
+                    return null;
+                });
+            }
+            if (i < CHURN) {
+                tasks.add(() -> {
+                    var visitor = new UiSession();
+                    manager.register(visitor);
+                    var presenter = presenters.get(Math.floorMod(visitor.id().hashCode(), PRESENTERS));
+                    manager.sendVideoOffer(visitor, presenter.id(), message(visitor, presenter.id()));
+                    manager.unregister(visitor);
+                    return null;
+                });
+            }
+        }
+        runConcurrently(tasks);
+        // Candidates are batched by the relay and every message is handled in a UI access task, so wait for them
+        // before checking the dispatcher has settled
+        await(() -> presenters.stream().allMatch(p -> p.iceCandidates.size() == SESSIONS * ICE_CANDIDATES)
+                && viewers.stream().allMatch(v -> v.iceCandidates.size() == PRESENTERS * ICE_CANDIDATES
+                && v.answers.size() == PRESENTERS)
+                && presenters.stream().mapToInt(p -> p.offers.size()).sum() == PRESENTERS * SESSIONS + CHURN);
+        signaling.awaitQuiescence(TIMEOUT);
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        var allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+
+        for (var viewer : viewers) {
+            assertEquals(PRESENTERS, viewer.invitations.size(), viewer + " invitations");
+        }
+        assertEquals(PRESENTERS + SESSIONS, manager.sessionIds().size());
+        var stats = manager.signalingStats();
+        // Only the invitations still queued for a session that has left are dropped
+        assertTrue(stats.dropped() <= (long) CHURN * PRESENTERS, stats + " dropped");
+        var millis = Math.max(1, elapsed.toMillis());
+        log.info("{} sessions negotiated with {} presenters while {} sessions joined and left in {} ms, "
+                        + "{} messages per second, access latency p50 {} p99 {}, allocated {} MB at {} MB/s, "
+                        + "{} bytes per message, {}",
+                SESSIONS, PRESENTERS, CHURN, millis, stats.delivered() * 1000 / millis,
+                accessLatency.percentile(0.5), accessLatency.percentile(0.99), allocated >> 20,
+                (allocated >> 20) * 1000 / millis, allocated / Math.max(1, stats.delivered()), stats);
+    }
+
+    private void negotiate(UiSession viewer, UiSession presenter) {
+        var manager = signaling.manager;
+        manager.sendVideoOffer(viewer, presenter.id(), message(viewer, presenter.id()));
+        manager.sendVideoAnswer(presenter, viewer.id(), message(presenter, viewer.id()));
+        for (var i = 0; i < ICE_CANDIDATES; i++) {
+            manager.sendNewICECandidate(viewer, presenter.id(), message(viewer, presenter.id()));
+            manager.sendNewICECandidate(presenter, viewer.id(), message(presenter, viewer.id()));
+        }
+    }
+
+    private JsonObject message(WebRTCSession source, UUID recipient) {
+        var message = TestSignaling.message(source, recipient);
+        message.put("sentAt", System.nanoTime() - origin);
+        return message;
+    }
+
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (var task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        for (var future : futures) {
+            future.get();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Load did not complete within " + TIMEOUT);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Handles messages like {@link WebRTCSupport}: the delivery only queues a task, which later runs under the lock of
+     * the session's UI.
+     */
+    private final class UiSession extends TestWebRTCSession {
+
+        private final Object uiLock = new Object();
+
+        @Override
+        public void handleInvitation(WebRTCSession source, JsonValue message) {
+            access(message, () -> super.handleInvitation(source, message));
+        }
+
+        @Override
+        public void handleInvitationAnswer(WebRTCSession source, JsonValue message) {
+            access(message, () -> super.handleInvitationAnswer(source, message));
+        }
+
+        @Override
+        public void handleNewICECandidate(WebRTCSession source, JsonValue message) {
+            access(message, () -> super.handleNewICECandidate(source, message));
+        }
+
+        private void access(JsonValue message, Runnable task) {
+            var sentAt = (long) ((JsonObject) message).getNumber("sentAt");
+            uiExecutor.execute(() -> {
+                synchronized (uiLock) {
+                    task.run();
+                }
+                accessLatency.record(System.nanoTime() - origin - sentAt);
+            });
+        }
+    }
+}
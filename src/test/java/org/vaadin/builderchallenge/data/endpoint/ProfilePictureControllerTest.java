@@ -0,0 +1,143 @@
+package org.vaadin.builderchallenge.data.endpoint;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.vaadin.builderchallenge.data.service.AvatarSize;
+import org.vaadin.builderchallenge.data.service.ProfilePictureInfo;
+import org.vaadin.builderchallenge.data.service.ProfilePictureService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfilePictureControllerTest {
+
+    private static final byte[] PICTURE = {1, 2, 3, 4};
+    private static final byte[] THUMBNAIL = {5, 6};
+
+    private final FakePictures pictures = new FakePictures();
+    private final ProfilePictureController controller = new ProfilePictureController(pictures, 300);
+
+    @Test
+    void pictureIsSentWithItsEntityTag() throws IOException {
+        var response = controller.get(1L, null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-7\"", response.getHeaders().getETag());
+        assertEquals("max-age=300, private", response.getHeaders().getCacheControl());
+        assertEquals(MediaType.parseMediaType("image/png"), response.getHeaders().getContentType());
+        assertEquals(PICTURE.length, response.getHeaders().getContentLength());
+        assertArrayEquals(PICTURE, body(response));
+    }
+
+    @Test
+    void pictureIsNotSentAgainWhileItsEntityTagMatches() {
+        for (var ifNoneMatch : new String[]{"\"1-7\"", "W/\"1-7\"", "\"1-6\", \"1-7\"", "*"}) {
+            var response = controller.get(1L, null, ifNoneMatch);
+
+            assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode(), ifNoneMatch);
+            assertEquals("\"1-7\"", response.getHeaders().getETag(), ifNoneMatch);
+            assertEquals("max-age=300, private", response.getHeaders().getCacheControl(), ifNoneMatch);
+            assertNull(response.getBody(), ifNoneMatch);
+        }
+        assertEquals(0, pictures.reads);
+    }
+
+    @Test
+    void changedPictureIsSentAgain() throws IOException {
+        var response = controller.get(1L, null, "\"1-6\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(PICTURE, body(response));
+    }
+
+    @Test
+    void pictureReplacedWhileBeingSentFailsTheResponse() {
+        var response = controller.get(1L, null, null);
+        pictures.replaced = true;
+
+        assertThrows(IOException.class, () -> body(response));
+    }
+
+    @Test
+    void thumbnailsHaveAnEntityTagPerSize() throws IOException {
+        var response = controller.get(1L, "small", null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-7-small\"", response.getHeaders().getETag());
+        assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
+        assertArrayEquals(THUMBNAIL, body(response));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, controller.get(1L, "small", "\"1-7-small\"").getStatusCode());
+        assertEquals(HttpStatus.OK, controller.get(1L, "medium", "\"1-7-small\"").getStatusCode());
+        assertEquals(HttpStatus.OK, controller.get(1L, "small", "\"1-7\"").getStatusCode());
+        assertEquals(HttpStatus.OK, controller.get(1L, null, "\"1-7-small\"").getStatusCode());
+    }
+
+    @Test
+    void unknownSizesAreBadRequests() {
+        assertEquals(HttpStatus.BAD_REQUEST, controller.get(1L, "huge", null).getStatusCode());
+    }
+
+    @Test
+    void missingPicturesAndThumbnailsAreNotFound() {
+        assertEquals(HttpStatus.NOT_FOUND, controller.get(2L, null, null).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, controller.get(2L, "small", "*").getStatusCode());
+
+        pictures.thumbnail = null;
+        assertEquals(HttpStatus.NOT_FOUND, controller.get(1L, "small", null).getStatusCode());
+    }
+
+    @Test
+    void negativeMaxAgeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ProfilePictureController(pictures, -1));
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        var out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Has a PNG picture, version 7, for user 1 only.
+     */
+    private static class FakePictures extends ProfilePictureService {
+
+        private final ProfilePictureInfo info = new ProfilePictureInfo(1L, 7, "image/png", PICTURE.length);
+        private byte[] thumbnail = THUMBNAIL;
+        private boolean replaced;
+        private int reads;
+
+        FakePictures() {
+            super(null, null, null, null, 1);
+        }
+
+        @Override
+        public Optional<ProfilePictureInfo> getInfo(Long userId) {
+            return userId.equals(info.userId()) ? Optional.of(info) : Optional.empty();
+        }
+
+        @Override
+        public boolean writeTo(ProfilePictureInfo info, OutputStream out) throws IOException {
+            reads++;
+            if (replaced) {
+                return false;
+            }
+            out.write(PICTURE);
+            return true;
+        }
+
+        @Override
+        public Optional<byte[]> getThumbnail(ProfilePictureInfo info, AvatarSize size) {
+            reads++;
+            return Optional.ofNullable(thumbnail);
+        }
+    }
+}
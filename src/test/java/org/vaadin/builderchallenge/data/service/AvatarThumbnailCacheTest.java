@@ -0,0 +1,101 @@
+package org.vaadin.builderchallenge.data.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarThumbnailCacheTest {
+
+    private static final int KB = 1024;
+
+    // Room for two of the thumbnails used here, not for three
+    private final AvatarThumbnailCache cache = new AvatarThumbnailCache(1);
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    void thumbnailsAreRenderedOnceAndCachedPerVersionAndSize() {
+        var picture = picture(1L, 0);
+
+        var first = get(picture, AvatarSize.XSMALL, 10);
+        assertSame(first, get(picture, AvatarSize.XSMALL, 10));
+        get(picture, AvatarSize.MEDIUM, 10);
+        get(picture(1L, 1), AvatarSize.XSMALL, 10);
+
+        assertEquals(3, renders.get());
+        var stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(3, stats.misses());
+        assertEquals(3, stats.size());
+        assertEquals(30 * KB, stats.bytes());
+    }
+
+    @Test
+    void leastRecentlyUsedThumbnailsAreEvictedByTotalSize() {
+        var a = picture(1L, 0);
+        var b = picture(2L, 0);
+        var c = picture(3L, 0);
+        get(a, AvatarSize.XSMALL, 400);
+        get(b, AvatarSize.XSMALL, 400);
+        get(a, AvatarSize.XSMALL, 400);
+        get(c, AvatarSize.XSMALL, 400);
+
+        var stats = cache.stats();
+        assertEquals(1, stats.evicted());
+        assertEquals(2, stats.size());
+        assertEquals(800 * KB, stats.bytes());
+        get(a, AvatarSize.XSMALL, 400);
+        get(c, AvatarSize.XSMALL, 400);
+        assertEquals(3, renders.get());
+        get(b, AvatarSize.XSMALL, 400);
+        assertEquals(4, renders.get());
+    }
+
+    @Test
+    void thumbnailsLargerThanTheCacheAreReturnedButNotKept() {
+        var picture = picture(1L, 0);
+
+        assertEquals(2048 * KB, get(picture, AvatarSize.XSMALL, 2048).length);
+        get(picture, AvatarSize.XSMALL, 2048);
+
+        assertEquals(2, renders.get());
+        assertEquals(0, cache.stats().size());
+        assertEquals(0, cache.stats().bytes());
+    }
+
+    @Test
+    void invalidatingAUserDropsAllOfItsThumbnails() {
+        get(picture(1L, 0), AvatarSize.XSMALL, 10);
+        get(picture(1L, 0), AvatarSize.SMALL, 10);
+        get(picture(2L, 0), AvatarSize.XSMALL, 10);
+
+        cache.invalidate(1L);
+
+        assertEquals(1, cache.stats().size());
+        assertEquals(10 * KB, cache.stats().bytes());
+        get(picture(1L, 0), AvatarSize.XSMALL, 10);
+        assertEquals(4, renders.get());
+    }
+
+    @Test
+    void picturesThatCannotBeRenderedAreNotCached() {
+        var picture = picture(1L, 0);
+
+        assertTrue(cache.get(picture, AvatarSize.XSMALL, Optional::empty).isEmpty());
+        assertEquals(0, cache.stats().size());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    private byte[] get(ProfilePictureInfo picture, AvatarSize size, int kilobytes) {
+        return cache.get(picture, size, () -> {
+            renders.incrementAndGet();
+            return Optional.of(new byte[kilobytes * KB]);
+        }).orElseThrow();
+    }
+
+    private static ProfilePictureInfo picture(Long userId, int version) {
+        return new ProfilePictureInfo(userId, version, "image/png", 1000);
+    }
+}
@@ -0,0 +1,81 @@
+package org.vaadin.builderchallenge.data.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfilePictureServiceTest {
+
+    private static final long MAX_PIXELS = 25_000_000;
+
+    @Test
+    void largeImagesAreSubsampledToTheirMiddleSquare() throws IOException {
+        // Red, green and blue thirds, so only the middle square is green
+        var png = png(3000, 1000, Color.RED, Color.GREEN, Color.BLUE);
+
+        var decoded = ProfilePictureService.decode(new ByteArrayInputStream(png), 40, MAX_PIXELS);
+
+        assertEquals(decoded.getWidth(), decoded.getHeight());
+        assertTrue(decoded.getWidth() >= 80 && decoded.getWidth() < 1000, decoded.getWidth() + " pixels");
+        assertGreen(decoded, 0, 0);
+        assertGreen(decoded, decoded.getWidth() - 1, decoded.getHeight() - 1);
+
+        var scaled = ProfilePictureService.scale(decoded, 40);
+        assertEquals(40, scaled.getWidth());
+        assertEquals(40, scaled.getHeight());
+        assertGreen(scaled, 20, 20);
+    }
+
+    @Test
+    void smallImagesAreNotEnlarged() throws IOException {
+        var png = png(30, 20, Color.GREEN);
+
+        var scaled = ProfilePictureService.scale(
+                ProfilePictureService.decode(new ByteArrayInputStream(png), 64, MAX_PIXELS), 64);
+
+        assertEquals(20, scaled.getWidth());
+        assertEquals(20, scaled.getHeight());
+    }
+
+    @Test
+    void imagesWithTooManyPixelsAreRejected() throws IOException {
+        var png = png(200, 100, Color.GREEN);
+
+        var ex = assertThrows(IIOException.class,
+                () -> ProfilePictureService.decode(new ByteArrayInputStream(png), 64, 19_999));
+        assertTrue(ex.getMessage().contains("200x100"), ex.getMessage());
+        assertNotNull(ProfilePictureService.decode(new ByteArrayInputStream(png), 64, 20_000));
+    }
+
+    @Test
+    void dataInNoKnownFormatIsNotDecoded() throws IOException {
+        assertNull(ProfilePictureService.decode(new ByteArrayInputStream(new byte[]{1, 2, 3}), 64, MAX_PIXELS));
+    }
+
+    private static byte[] png(int width, int height, Color... stripes) throws IOException {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var graphics = image.createGraphics();
+        for (var i = 0; i < stripes.length; i++) {
+            graphics.setColor(stripes[i]);
+            graphics.fillRect(width * i / stripes.length, 0, width / stripes.length + 1, height);
+        }
+        graphics.dispose();
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static void assertGreen(BufferedImage image, int x, int y) {
+        var color = new Color(image.getRGB(x, y));
+        assertTrue(color.getGreen() > 200 && color.getRed() < 50 && color.getBlue() < 50,
+                "Pixel " + x + "," + y + " is " + color);
+    }
+}
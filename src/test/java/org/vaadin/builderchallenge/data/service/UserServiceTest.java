@@ -0,0 +1,115 @@
+package org.vaadin.builderchallenge.data.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.vaadin.builderchallenge.data.entity.ProfilePicture;
+import org.vaadin.builderchallenge.data.entity.User;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages through the users of the demo data together with users added by each test, some of whom share a name or have
+ * none, and compares the pages with the users sorted in memory.
+ */
+@DataJpaTest
+class UserServiceTest {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private UserRepository repository;
+    @Autowired
+    private ProfilePictureRepository pictureRepository;
+    @Autowired
+    private DataSource dataSource;
+    private UserService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UserService(repository, new UserSummaryCache(10), null, event -> {
+        }, new JdbcTemplate(dataSource), PAGE_SIZE);
+        var users = new ArrayList<User>();
+        for (var name : new String[]{"Carol", "Alice", "Bob", "Alice", null, "Carol", "Alice", null}) {
+            var user = new User();
+            user.setUsername("user" + users.size());
+            user.setName(name);
+            user.setHashedPassword("{noop}secret");
+            users.add(user);
+        }
+        repository.saveAllAndFlush(users);
+        var picture = new ProfilePicture();
+        picture.setUserId(users.get(1).getId());
+        picture.setContentType("image/png");
+        picture.setData(new byte[]{1});
+        pictureRepository.saveAndFlush(picture);
+    }
+
+    @Test
+    void pagesByNameHaveEveryNamedUserOnceInNameAndIdOrder() {
+        var expected = repository.findAll().stream()
+                .filter(user -> user.getName() != null)
+                .sorted(Comparator.comparing(User::getName).thenComparing(User::getId))
+                .map(User::getId)
+                .toList();
+
+        var listed = new ArrayList<Long>();
+        UserSummary last = null;
+        List<UserSummary> page;
+        while (!(page = service.listSummariesByName(last, PAGE_SIZE)).isEmpty()) {
+            assertTrue(page.size() <= PAGE_SIZE, page.size() + " users");
+            page.forEach(summary -> listed.add(summary.id()));
+            last = page.get(page.size() - 1);
+        }
+
+        assertEquals(expected, listed);
+    }
+
+    @Test
+    void pagesByIdHaveEveryUserOnceInIdOrder() {
+        var expected = repository.findAll().stream().map(User::getId).sorted().toList();
+
+        var listed = new ArrayList<Long>();
+        Long lastId = null;
+        List<UserSummary> page;
+        while (!(page = service.listSummaries(lastId, PAGE_SIZE)).isEmpty()) {
+            assertTrue(page.size() <= PAGE_SIZE, page.size() + " users");
+            page.forEach(summary -> listed.add(summary.id()));
+            lastId = listed.get(listed.size() - 1);
+        }
+
+        assertEquals(expected, listed);
+    }
+
+    @Test
+    void streamHasEveryUserInIdOrderWithTheirPictures() {
+        var users = repository.findAll().stream().sorted(Comparator.comparing(User::getId)).toList();
+        Set<Long> withPicture = pictureRepository.findAll().stream()
+                .map(ProfilePicture::getUserId)
+                .collect(Collectors.toSet());
+
+        List<UserSummary> streamed;
+        try (var summaries = service.streamSummaries()) {
+            streamed = summaries.toList();
+        }
+
+        assertEquals(users.size(), streamed.size());
+        for (var i = 0; i < users.size(); i++) {
+            var user = users.get(i);
+            var summary = streamed.get(i);
+            assertEquals(user.getId(), summary.id());
+            assertEquals(user.getUsername(), summary.username());
+            assertEquals(user.getName(), summary.name());
+            assertEquals(withPicture.contains(user.getId()), summary.hasPicture(), user.getUsername());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.vaadin.builderchallenge.data.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSummaryCacheTest {
+
+    private final UserSummaryCache cache = new UserSummaryCache(2);
+    private final List<String> loads = new ArrayList<>();
+
+    @Test
+    void summariesAreLoadedOnceUntilInvalidated() {
+        assertEquals("Alice", get("alice").orElseThrow().name());
+        assertEquals("Alice", get("alice").orElseThrow().name());
+        assertEquals(List.of("alice"), loads);
+
+        cache.invalidate(1L);
+        get("alice");
+
+        assertEquals(List.of("alice", "alice"), loads);
+        var stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    void unknownUsersAreNotCached() {
+        assertTrue(get("nobody").isEmpty());
+        assertTrue(get("nobody").isEmpty());
+
+        assertEquals(List.of("nobody", "nobody"), loads);
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    void leastRecentlyUsedSummaryIsEvicted() {
+        get("alice");
+        get("bob");
+        get("alice");
+        get("carol");
+
+        get("alice");
+        get("carol");
+        assertEquals(List.of("alice", "bob", "carol"), loads);
+        get("bob");
+        assertEquals(List.of("alice", "bob", "carol", "bob"), loads);
+        assertEquals(2, cache.stats().size());
+    }
+
+    @Test
+    void invalidationOnlyDropsTheGivenUser() {
+        get("alice");
+        get("bob");
+
+        cache.invalidate(2L);
+        get("alice");
+        get("bob");
+
+        assertEquals(List.of("alice", "bob", "bob"), loads);
+    }
+
+    @Test
+    void summaryLoadedBeforeAnInvalidationIsNotCached() {
+        // The user changes while their old summary is being loaded
+        Function<String, Optional<UserSummary>> staleLoader = username -> {
+            var stale = summary(username);
+            cache.invalidate(stale.orElseThrow().id());
+            return stale;
+        };
+        assertEquals("Alice", cache.get("alice", staleLoader).orElseThrow().name());
+
+        assertEquals(0, cache.stats().size());
+        get("alice");
+        assertEquals(List.of("alice"), loads);
+        assertEquals(1, cache.stats().size());
+    }
+
+    private Optional<UserSummary> get(String username) {
+        return cache.get(username, name -> {
+            loads.add(name);
+            return summary(name);
+        });
+    }
+
+    private static Optional<UserSummary> summary(String username) {
+        return switch (username) {
+            case "alice" -> Optional.of(new UserSummary(1L, 0, "alice", "Alice", true));
+            case "bob" -> Optional.of(new UserSummary(2L, 0, "bob", "Bob", false));
+            case "carol" -> Optional.of(new UserSummary(3L, 0, "carol", "Carol", false));
+            default -> Optional.empty();
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.UserInfo;
+import org.junit.jupiter.api.Test;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionCodecTest {
+
+    @Test
+    void questionsSurviveTheRoundTrip() {
+        var question = new Question(Long.MAX_VALUE, new UserInfo("alice", "Alice Ärger"), "Wie geht's? 🚀");
+        question.setVote(new UserInfo("alice"), new Vote("alice", Vote.Value.THREE));
+        question.setVote(new UserInfo("bob"), new Vote("bob", Vote.Value.ONE));
+
+        var decoded = QuestionCodec.decode(QuestionCodec.encodeToString(question));
+
+        assertEquals(question.getId(), decoded.getId());
+        assertEquals("alice", decoded.getAuthorInfo().getId());
+        assertEquals("Alice Ärger", decoded.getAuthorInfo().getName());
+        assertEquals(question.getMessage(), decoded.getMessage());
+        assertEquals(List.of("alice", "bob"), decoded.getVotes().keySet().stream().sorted().toList());
+        assertEquals(Vote.Value.THREE, decoded.getVotes().get("alice").getValue());
+        assertEquals(Vote.Value.ONE, decoded.getVotes().get("bob").getValue());
+        assertEquals(4, decoded.getScore());
+        assertEquals(1, decoded.getVoteCount(Vote.Value.THREE));
+        assertEquals(0, decoded.getVoteCount(Vote.Value.TWO));
+        assertEquals(1, decoded.getVoteCount(Vote.Value.ONE));
+    }
+
+    @Test
+    void missingAuthorAndMessageSurviveTheRoundTrip() {
+        var decoded = QuestionCodec.decode(QuestionCodec.encode(new Question(0L, null, null)));
+
+        assertEquals(Long.valueOf(0), decoded.getId());
+        assertNull(decoded.getAuthorInfo());
+        assertNull(decoded.getMessage());
+        assertTrue(decoded.getVotes().isEmpty());
+    }
+
+    @Test
+    void truncatedEncodingsAreRejected() {
+        var question = new Question(7L, new UserInfo("alice", "Alice"), "Question");
+        question.setVote(new UserInfo("bob"), new Vote("bob", Vote.Value.TWO));
+        var bytes = QuestionCodec.encode(question);
+
+        for (var length = 0; length < bytes.length; length++) {
+            var truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IllegalArgumentException.class, () -> QuestionCodec.decode(truncated), length + " bytes");
+        }
+    }
+
+    @Test
+    void stringLengthBeyondTheEncodingIsRejected() {
+        for (var length : new long[]{Integer.MAX_VALUE, 1L << 32, -1L}) {
+            var out = new ByteArrayOutputStream();
+            out.write(1);
+            writeVarLong(out, 1);
+            writeVarLong(out, 1);
+            writeVarLong(out, length);
+            out.write('x');
+            var bytes = out.toByteArray();
+
+            var ex = assertThrows(IllegalArgumentException.class, () -> QuestionCodec.decode(bytes));
+            assertTrue(ex.getMessage().startsWith("Malformed question encoding"), ex.getMessage());
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        var bytes = QuestionCodec.encode(new Question(1L, null, "Question"));
+        bytes[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> QuestionCodec.decode(bytes));
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,103 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionIdGeneratorTest {
+
+    private static final long NOW = Instant.parse("2026-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_SHIFT = 12;
+    private static final long NODE_MASK = (1L << 10) - 1;
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+
+    @Test
+    void idsIncreaseWithinAndAcrossMilliseconds() {
+        var generator = new QuestionIdGenerator(3, clock::get);
+        var previous = generator.nextId();
+        // More ids than the sequence holds, so some borrow from the next millisecond
+        for (var i = 0; i < 10_000; i++) {
+            if (i % 3_000 == 0) {
+                clock.incrementAndGet();
+            }
+            var id = generator.nextId();
+            assertTrue(id > previous, id + " after " + previous);
+            assertEquals(3, id >>> NODE_SHIFT & NODE_MASK);
+            previous = id;
+        }
+    }
+
+    @Test
+    void idsKeepIncreasingWhenTheClockStepsBack() {
+        var generator = new QuestionIdGenerator(1, clock::get);
+        var beforeStep = generator.nextId();
+        clock.addAndGet(-60_000);
+
+        var afterStep = generator.nextId();
+        assertTrue(afterStep > beforeStep);
+        assertTrue(generator.nextId() > afterStep);
+
+        // Once the clock has caught up, ids follow it again
+        clock.addAndGet(120_000);
+        var caughtUp = generator.nextId();
+        assertTrue(caughtUp > afterStep);
+        assertEquals(caughtUp, new QuestionIdGenerator(1, clock::get).nextId());
+    }
+
+    @Test
+    void idsAfterRecoveryAreGreaterThanTheRecoveredOnes() {
+        var recovered = new QuestionIdGenerator(2, clock::get).nextId();
+        clock.addAndGet(-5_000);
+        var generator = new QuestionIdGenerator(2, clock::get);
+
+        generator.advancePast(recovered);
+
+        assertTrue(generator.nextId() > recovered);
+    }
+
+    @Test
+    void concurrentCallersGetDistinctIds() throws Exception {
+        var generator = new QuestionIdGenerator(0, System::currentTimeMillis);
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<List<Long>>> tasks = new ArrayList<>();
+            for (var i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    var ids = new ArrayList<Long>();
+                    for (var j = 0; j < 20_000; j++) {
+                        ids.add(generator.nextId());
+                    }
+                    return ids;
+                });
+            }
+            var all = new HashSet<Long>();
+            for (var future : executor.invokeAll(tasks)) {
+                var ids = future.get();
+                for (var j = 1; j < ids.size(); j++) {
+                    assertTrue(ids.get(j) > ids.get(j - 1));
+                }
+                all.addAll(ids);
+            }
+            assertEquals(8 * 20_000, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void clusteredNodeNeedsItsOwnNodeNumber() {
+        assertThrows(IllegalStateException.class, () -> new QuestionIdGenerator("", "tcp"));
+        new QuestionIdGenerator("", "in-jvm");
+        new QuestionIdGenerator("5", "tcp");
+        assertThrows(IllegalArgumentException.class, () -> new QuestionIdGenerator("1024", "tcp"));
+    }
+}
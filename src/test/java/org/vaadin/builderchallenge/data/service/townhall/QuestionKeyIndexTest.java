@@ -0,0 +1,50 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.ListKey;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionKeyIndexTest {
+
+    private static final String TOPIC = "topic";
+
+    private final QuestionKeyIndex index = new QuestionKeyIndex();
+
+    @Test
+    void indexIsDroppedWhenTheLastViewClosesTheTopic() {
+        assertTrue(index.open(TOPIC));
+        assertFalse(index.open(TOPIC));
+        var key = new ListKey();
+        index.put(TOPIC, 1L, key);
+
+        index.close(TOPIC);
+        assertEquals(key, index.get(TOPIC, 1L).orElseThrow());
+
+        index.close(TOPIC);
+        assertTrue(index.get(TOPIC, 1L).isEmpty());
+        assertEquals(new QuestionKeyIndexStats(0, 0, 1), index.stats());
+        assertTrue(index.open(TOPIC));
+    }
+
+    @Test
+    void keysOfClosedTopicsAreNotKept() {
+        index.put(TOPIC, 1L, new ListKey());
+
+        assertTrue(index.get(TOPIC, 1L).isEmpty());
+        assertEquals(new QuestionKeyIndexStats(0, 0, 0), index.stats());
+    }
+
+    @Test
+    void removedQuestionsAreCountedAsEvicted() {
+        index.open(TOPIC);
+        index.put(TOPIC, 1L, new ListKey());
+        index.put(TOPIC, 2L, new ListKey());
+
+        index.remove(TOPIC, 1L);
+        index.remove(TOPIC, 3L);
+
+        assertTrue(index.get(TOPIC, 1L).isEmpty());
+        assertEquals(new QuestionKeyIndexStats(1, 1, 1), index.stats());
+    }
+}
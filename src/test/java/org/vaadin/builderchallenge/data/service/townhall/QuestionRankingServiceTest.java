@@ -0,0 +1,181 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.UserInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the ranking against the questions sorted from scratch after every batch of votes.
+ */
+class QuestionRankingServiceTest {
+
+    private static final String TOPIC = "topic";
+
+    private final TownhallEventLog eventLog = new TownhallEventLog("", 16, 10_000, 1000);
+    private final QuestionRankingService service = new QuestionRankingService(eventLog,
+            new QuestionIdGenerator(0, System::currentTimeMillis));
+    // Question id to voter id to vote value, as the oracle sees it
+    private final Map<Long, Map<String, Integer>> votes = new HashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        eventLog.close();
+    }
+
+    @Test
+    void newQuestionsAreRankedOldestFirst() {
+        var first = ask();
+        var second = ask();
+
+        assertEquals(List.of(first.getId(), second.getId()), ids(service.top(TOPIC, 10)));
+        assertEquals(1, service.rankOf(TOPIC, second.getId()).orElseThrow());
+        assertTrue(service.rankOf(TOPIC, -1L).isEmpty());
+        assertTrue(service.rankOf("other", first.getId()).isEmpty());
+    }
+
+    @Test
+    void votesThatChangeNothingAreIgnored() {
+        var question = ask();
+        var placements = service.apply(TOPIC, List.of(
+                VoteEvent.cast(TOPIC, question.getId(), "alice", Vote.Value.TWO),
+                VoteEvent.cast(TOPIC, -1L, "alice", Vote.Value.TWO)));
+        assertEquals(1, placements.size());
+        assertEquals(2, placements.get(0).question().getScore());
+
+        assertEquals(List.of(), service.apply(TOPIC, List.of(
+                VoteEvent.cast(TOPIC, question.getId(), "alice", Vote.Value.TWO),
+                VoteEvent.retract(TOPIC, question.getId(), "bob"))));
+    }
+
+    @Test
+    void topScoresAreDistinctAndSkipUnvotedQuestions() {
+        var a = ask();
+        var b = ask();
+        var c = ask();
+        ask();
+        service.apply(TOPIC, List.of(
+                VoteEvent.cast(TOPIC, a.getId(), "alice", Vote.Value.TWO),
+                VoteEvent.cast(TOPIC, b.getId(), "alice", Vote.Value.TWO),
+                VoteEvent.cast(TOPIC, c.getId(), "alice", Vote.Value.ONE)));
+
+        assertEquals(List.of(2, 1), service.topScores(TOPIC, 3));
+        assertEquals(List.of(2), service.topScores(TOPIC, 1));
+        assertEquals(List.of(a.getId(), b.getId()), ids(service.top(TOPIC, 2)));
+    }
+
+    @Test
+    void equalScoresAreRankedByTheirHighestVotes() {
+        var ones = ask();
+        var oneAndTwo = ask();
+        var three = ask();
+        service.apply(TOPIC, List.of(
+                VoteEvent.cast(TOPIC, ones.getId(), "alice", Vote.Value.ONE),
+                VoteEvent.cast(TOPIC, ones.getId(), "bob", Vote.Value.ONE),
+                VoteEvent.cast(TOPIC, ones.getId(), "carol", Vote.Value.ONE),
+                VoteEvent.cast(TOPIC, oneAndTwo.getId(), "alice", Vote.Value.TWO),
+                VoteEvent.cast(TOPIC, oneAndTwo.getId(), "bob", Vote.Value.ONE),
+                VoteEvent.cast(TOPIC, three.getId(), "alice", Vote.Value.THREE)));
+
+        var top = service.top(TOPIC, 3);
+        assertEquals(List.of(three.getId(), oneAndTwo.getId(), ones.getId()), ids(top));
+        assertEquals(List.of(3), service.topScores(TOPIC, 3));
+        assertEquals(3, top.get(2).getVoteCount(Vote.Value.ONE));
+        assertEquals(0, top.get(2).getVoteCount(Vote.Value.THREE));
+
+        service.apply(TOPIC, List.of(VoteEvent.retract(TOPIC, three.getId(), "alice")));
+        var changed = service.top(TOPIC, 3).get(2);
+        assertEquals(three.getId(), changed.getId());
+        assertEquals(0, changed.getVoteCount(Vote.Value.THREE));
+    }
+
+    @Test
+    void randomVotesMatchTheSortedQuestions() {
+        var random = new Random(7);
+        var ids = new ArrayList<Long>();
+        for (var i = 0; i < 60; i++) {
+            ids.add(ask().getId());
+        }
+        for (var round = 0; round < 300; round++) {
+            var events = new ArrayList<VoteEvent>();
+            for (var i = 0; i < 10; i++) {
+                var questionId = ids.get(random.nextInt(ids.size()));
+                var voter = "voter-" + random.nextInt(20);
+                if (random.nextInt(4) == 0) {
+                    events.add(VoteEvent.retract(TOPIC, questionId, voter));
+                    votes.get(questionId).remove(voter);
+                } else {
+                    var value = Vote.Value.values()[random.nextInt(Vote.Value.values().length)];
+                    events.add(VoteEvent.cast(TOPIC, questionId, voter, value));
+                    votes.get(questionId).put(voter, value.getIntVal());
+                }
+            }
+            var placements = service.apply(TOPIC, events);
+
+            var expected = expectedOrder();
+            for (var placement : placements) {
+                var rank = expected.indexOf(placement.question().getId());
+                assertEquals(rank, placement.rank());
+                assertEquals(score(placement.question().getId()), placement.question().getScore());
+                for (var value : Vote.Value.values()) {
+                    assertEquals(voteCount(placement.question().getId(), value),
+                            placement.question().getVoteCount(value), value + " votes");
+                }
+                assertEquals(rank + 1 < expected.size() ? expected.get(rank + 1) : null,
+                        placement.next() == null ? null : placement.next().getId());
+            }
+            assertEquals(expected, ids(service.top(TOPIC, expected.size())));
+            assertEquals(expected.subList(0, 5), ids(service.top(TOPIC, 5)));
+            assertEquals(expected.subList(20, 30), ids(service.page(TOPIC, 20, 10)));
+            var questionId = ids.get(random.nextInt(ids.size()));
+            assertEquals(expected.indexOf(questionId), service.rankOf(TOPIC, questionId).orElseThrow());
+            assertEquals(expectedTopScores(3), service.topScores(TOPIC, 3));
+        }
+    }
+
+    private Question ask() {
+        var question = service.ask(TOPIC, new UserInfo("author"), "Question " + votes.size());
+        votes.put(question.getId(), new HashMap<>());
+        return question;
+    }
+
+    private int score(Long questionId) {
+        return votes.get(questionId).values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private int voteCount(Long questionId, Vote.Value value) {
+        return (int) votes.get(questionId).values().stream().filter(vote -> vote == value.getIntVal()).count();
+    }
+
+    private List<Long> expectedOrder() {
+        Comparator<Long> ranking = Comparator.comparingInt(this::score).reversed();
+        for (var value : List.of(Vote.Value.THREE, Vote.Value.TWO, Vote.Value.ONE)) {
+            ranking = ranking.thenComparing(Comparator.comparingInt((Long id) -> voteCount(id, value)).reversed());
+        }
+        return votes.keySet().stream().sorted(ranking.thenComparing(Comparator.naturalOrder())).toList();
+    }
+
+    private List<Integer> expectedTopScores(int count) {
+        return votes.keySet().stream()
+                .map(this::score)
+                .filter(score -> score > 0)
+                .distinct()
+                .sorted(Comparator.reverseOrder())
+                .limit(count)
+                .toList();
+    }
+
+    private static List<Long> ids(List<Question> questions) {
+        return questions.stream().map(Question::getId).toList();
+    }
+}
@@ -0,0 +1,121 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the tree against a sorted list, which answers every query the slow way.
+ */
+class RankedTreeTest {
+
+    // Highest score first, lower id first among equal scores, like the question ranking
+    private static final Comparator<Item> ORDER = Comparator.comparingInt(Item::score).reversed()
+            .thenComparingLong(Item::id);
+
+    private record Item(long id, int score) {
+    }
+
+    private final RankedTree<Item> tree = new RankedTree<>(ORDER);
+    private final List<Item> oracle = new ArrayList<>();
+
+    @Test
+    void emptyTree() {
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.rankOf(new Item(1, 1)));
+        assertEquals(List.of(), tree.range(0, 10));
+        assertEquals(0, tree.prefixLength(item -> true));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.get(0));
+        assertFalse(tree.remove(new Item(1, 1)));
+    }
+
+    @Test
+    void tiesAreOrderedByIdAndTopNCutsThroughThem() {
+        for (var item : List.of(new Item(5, 2), new Item(1, 2), new Item(3, 7), new Item(4, 2), new Item(2, 0))) {
+            insert(item);
+        }
+
+        assertEquals(List.of(new Item(3, 7), new Item(1, 2), new Item(4, 2)), tree.range(0, 3));
+        assertEquals(1, tree.rankOf(new Item(1, 2)));
+        assertEquals(3, tree.rankOf(new Item(5, 2)));
+        assertEquals(4, tree.prefixLength(item -> item.score() >= 2));
+        assertEquals(1, tree.prefixLength(item -> item.score() >= 3));
+        verify();
+    }
+
+    @Test
+    void addingAnEqualValueIsRejected() {
+        insert(new Item(1, 3));
+
+        assertFalse(tree.add(new Item(1, 3)));
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    void randomOperationsMatchTheSortedList() {
+        var random = new Random(42);
+        var current = new HashMap<Long, Item>();
+        for (var step = 0; step < 20_000; step++) {
+            var id = (long) random.nextInt(500);
+            var existing = current.get(id);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    // Insert, or update the score by removing and re-adding, as the ranking does
+                    var item = new Item(id, random.nextInt(10));
+                    if (existing != null) {
+                        assertTrue(tree.remove(existing));
+                        oracle.remove(existing);
+                    }
+                    insert(item);
+                    current.put(id, item);
+                }
+                case 2 -> {
+                    var item = existing != null ? existing : new Item(id, random.nextInt(10));
+                    assertEquals(existing != null, tree.remove(item));
+                    oracle.remove(item);
+                    current.remove(id);
+                }
+                default -> {
+                    var item = existing != null ? existing : new Item(id, random.nextInt(10));
+                    assertEquals(oracle.indexOf(item), tree.rankOf(item));
+                }
+            }
+            if (step % 100 == 0) {
+                verify();
+            }
+        }
+        verify();
+    }
+
+    private void insert(Item item) {
+        assertTrue(tree.add(item));
+        var index = Collections.binarySearch(oracle, item, ORDER);
+        oracle.add(-index - 1, item);
+    }
+
+    private void verify() {
+        assertEquals(oracle.size(), tree.size());
+        assertEquals(oracle, tree.range(0, oracle.size() + 1));
+        for (var i = 0; i < oracle.size(); i++) {
+            assertEquals(oracle.get(i), tree.get(i));
+            assertEquals(i, tree.rankOf(oracle.get(i)));
+        }
+        for (var limit : new int[]{0, 1, 3, 10}) {
+            assertEquals(oracle.subList(0, Math.min(limit, oracle.size())), tree.range(0, limit), "top " + limit);
+        }
+        var offset = oracle.size() / 2;
+        assertEquals(oracle.subList(offset, Math.min(offset + 7, oracle.size())), tree.range(offset, 7));
+        for (var threshold = 0; threshold <= 10; threshold++) {
+            var minimum = threshold;
+            var expected = (int) oracle.stream().filter(item -> item.score() >= minimum).count();
+            assertEquals(expected, tree.prefixLength(item -> item.score() >= minimum), "score >= " + minimum);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.UserInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Question;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TownhallEventLogTest {
+
+    private static final String TOPIC = "topic";
+
+    @TempDir
+    Path directory;
+
+    private final List<TownhallEventLog> logs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        logs.forEach(TownhallEventLog::close);
+    }
+
+    @Test
+    void disabledWithoutDirectory() throws IOException {
+        var eventLog = new TownhallEventLog("", 1, 10_000, 60_000);
+        logs.add(eventLog);
+        eventLog.recover(new Recorder());
+        eventLog.appendQuestion(TOPIC, question(1));
+
+        assertFalse(eventLog.isEnabled());
+        assertFalse(eventLog.claimSnapshot());
+    }
+
+    @Test
+    void replaysQuestionsAndVotesInOrder() throws IOException {
+        var eventLog = open(new Recorder());
+        eventLog.appendQuestion(TOPIC, question(1));
+        eventLog.appendQuestion(TOPIC, question(2));
+        eventLog.appendVote(VoteEvent.cast(TOPIC, 1L, "alice", Vote.Value.TWO));
+        eventLog.appendVote(VoteEvent.retract(TOPIC, 1L, "alice"));
+        eventLog.close();
+
+        var recorder = new Recorder();
+        var recovered = open(recorder);
+
+        assertEquals(List.of(1L, 2L), List.copyOf(recorder.questions.keySet()));
+        assertEquals(List.of(VoteEvent.cast(TOPIC, 1L, "alice", Vote.Value.TWO), VoteEvent.retract(TOPIC, 1L, "alice")),
+                recorder.votes);
+        assertEquals(4, recovered.sequence());
+    }
+
+    @Test
+    void recoversFromSnapshotAndReplaysOnlyTheTail() throws Exception {
+        var eventLog = open(new Recorder());
+        var first = question(1);
+        eventLog.appendQuestion(TOPIC, first);
+        var vote = VoteEvent.cast(TOPIC, 1L, "alice", Vote.Value.TWO);
+        eventLog.appendVote(vote);
+        first.setVote(new UserInfo("alice"), new Vote("alice", Vote.Value.TWO));
+        eventLog.writeSnapshot(Map.of(TOPIC, new TownhallEventLog.TopicSnapshot(eventLog.sequence(), List.of(first))));
+        awaitSnapshot();
+        eventLog.appendQuestion(TOPIC, question(2));
+        var tailVote = VoteEvent.cast(TOPIC, 2L, "bob", Vote.Value.ONE);
+        eventLog.appendVote(tailVote);
+        eventLog.close();
+
+        var recorder = new Recorder();
+        var recovered = open(recorder);
+
+        assertEquals(List.of(1L, 2L), List.copyOf(recorder.questions.keySet()));
+        assertEquals(2, recorder.questions.get(1L).getScore());
+        assertEquals(List.of(tailVote), recorder.votes);
+        assertEquals(4, recovered.sequence());
+    }
+
+    @Test
+    void tornTailIsTruncatedAndAppendingContinuesAfterIt() throws IOException {
+        writeQuestions(3);
+        var segment = onlySegment();
+        long third = recordOffsets(segment).get(2);
+        // A length that runs past the end of the file, as left by a crash in the middle of a write
+        overwrite(segment, third, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).flip());
+
+        var recorder = new Recorder();
+        var recovered = open(recorder);
+
+        assertEquals(List.of(1L, 2L), List.copyOf(recorder.questions.keySet()));
+        assertEquals(third, Files.size(segment));
+        recovered.appendQuestion(TOPIC, question(4));
+        recovered.close();
+        var again = new Recorder();
+        open(again);
+        assertEquals(List.of(1L, 2L, 4L), List.copyOf(again.questions.keySet()));
+    }
+
+    @Test
+    void recordWithWrongChecksumIsTruncated() throws IOException {
+        writeQuestions(3);
+        var segment = onlySegment();
+        long second = recordOffsets(segment).get(1);
+        overwrite(segment, second + 8, ByteBuffer.wrap(new byte[]{(byte) 0xFF}));
+
+        var recorder = new Recorder();
+        open(recorder);
+
+        assertEquals(List.of(1L), List.copyOf(recorder.questions.keySet()));
+        assertEquals(second, Files.size(segment));
+    }
+
+    @Test
+    void undecodableRecordIsTruncatedInsteadOfFailingRecovery() throws IOException {
+        writeQuestions(3);
+        var segment = onlySegment();
+        long second = recordOffsets(segment).get(1);
+        // A record with a valid checksum but an unknown event type
+        var payload = new byte[]{99, 0, 0, 0, 0};
+        var crc = new CRC32();
+        crc.update(payload);
+        overwrite(segment, second, ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip());
+
+        var recorder = new Recorder();
+        open(recorder);
+
+        assertEquals(List.of(1L), List.copyOf(recorder.questions.keySet()));
+        assertEquals(second, Files.size(segment));
+    }
+
+    private TownhallEventLog open(TownhallEventLog.Listener listener) throws IOException {
+        var eventLog = new TownhallEventLog(directory.toString(), 1, 10_000, 60_000);
+        logs.add(eventLog);
+        eventLog.recover(listener);
+        return eventLog;
+    }
+
+    private void writeQuestions(int count) throws IOException {
+        var eventLog = open(new Recorder());
+        for (var id = 1L; id <= count; id++) {
+            eventLog.appendQuestion(TOPIC, question(id));
+        }
+        eventLog.close();
+    }
+
+    private static Question question(long id) {
+        return new Question(id, new UserInfo("author"), "Question " + id);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            var segments = files.filter(file -> file.getFileName().toString().endsWith(".log")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<Long> recordOffsets(Path segment) throws IOException {
+        var offsets = new ArrayList<Long>();
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= 8) {
+                var start = buffer.position();
+                var length = buffer.getInt();
+                if (length == 0) {
+                    break;
+                }
+                offsets.add((long) start);
+                buffer.position(start + 8 + length);
+            }
+        }
+        return offsets;
+    }
+
+    private static void overwrite(Path file, long position, ByteBuffer bytes) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    private void awaitSnapshot() throws Exception {
+        var deadline = System.nanoTime() + 5_000_000_000L;
+        while (true) {
+            try (Stream<Path> files = Files.list(directory)) {
+                if (files.anyMatch(file -> file.getFileName().toString().endsWith(".bin"))) {
+                    return;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                fail("Snapshot was not written");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class Recorder implements TownhallEventLog.Listener {
+
+        private final Map<Long, Question> questions = new LinkedHashMap<>();
+        private final List<VoteEvent> votes = new ArrayList<>();
+
+        @Override
+        public void questionRestored(String topic, Question question) {
+            questions.put(question.getId(), question);
+        }
+
+        @Override
+        public void voteReplayed(VoteEvent event) {
+            votes.add(event);
+        }
+    }
+}
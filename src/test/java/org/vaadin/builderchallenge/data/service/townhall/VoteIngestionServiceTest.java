@@ -0,0 +1,100 @@
+package org.vaadin.builderchallenge.data.service.townhall;
+
+import com.vaadin.collaborationengine.UserInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.vaadin.builderchallenge.data.pseudoentity.townhall.Vote;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoteIngestionServiceTest {
+
+    private static final String TOPIC = "topic";
+
+    private final FailingEventLog eventLog = new FailingEventLog();
+    private final QuestionRankingService rankingService = new QuestionRankingService(eventLog,
+            new QuestionIdGenerator(0, System::currentTimeMillis));
+    private final VoteIngestionService service = new VoteIngestionService(rankingService, 0, 1000);
+    private final BlockingQueue<List<QuestionRankingService.Placement>> published = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        eventLog.close();
+    }
+
+    @Test
+    void placementsWithoutPublisherGoToTheNextOne() throws Exception {
+        var first = rankingService.ask(TOPIC, new UserInfo("author"), "First");
+        var second = rankingService.ask(TOPIC, new UserInfo("author"), "Second");
+        service.submit(VoteEvent.cast(TOPIC, second.getId(), "alice", Vote.Value.THREE));
+        awaitVotesApplied(1);
+
+        service.addPublisher(TOPIC, published::add);
+
+        var placements = published.poll(5, TimeUnit.SECONDS);
+        assertNotNull(placements);
+        assertEquals(1, placements.size());
+        assertEquals(second.getId(), placements.get(0).question().getId());
+        assertEquals(0, placements.get(0).rank());
+        assertEquals(first.getId(), placements.get(0).next().getId());
+    }
+
+    @Test
+    void votesAreOnlyAppliedOnceLogged() throws Exception {
+        var question = rankingService.ask(TOPIC, new UserInfo("author"), "Question");
+        service.addPublisher(TOPIC, published::add);
+        eventLog.failAfter.set(2);
+        for (var voter : List.of("alice", "bob", "carol", "dave")) {
+            service.submit(VoteEvent.cast(TOPIC, question.getId(), voter, Vote.Value.ONE));
+        }
+
+        // The two logged votes are applied and published, even though their batch failed
+        var score = 0;
+        while (score < 2) {
+            var placements = published.poll(5, TimeUnit.SECONDS);
+            assertNotNull(placements, "Score 2 was never published");
+            score = placements.get(0).question().getScore();
+        }
+        awaitVotesApplied(1);
+        assertEquals(2, rankingService.placementOf(TOPIC, question.getId()).orElseThrow().question().getScore());
+    }
+
+    private void awaitVotesApplied(int count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.stats().batches() < count || service.stats().pending() > 0) {
+            if (System.nanoTime() > deadline) {
+                fail("Votes were not applied");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * A disabled log that fails once the given number of votes has been appended.
+     */
+    private static final class FailingEventLog extends TownhallEventLog {
+
+        private final AtomicInteger failAfter = new AtomicInteger(Integer.MAX_VALUE);
+
+        private FailingEventLog() {
+            super("", 16, 10_000, 1000);
+        }
+
+        @Override
+        public synchronized void appendVote(VoteEvent event) {
+            if (failAfter.getAndDecrement() <= 0) {
+                throw new UncheckedIOException(new IOException("Disk full"));
+            }
+            super.appendVote(event);
+        }
+    }
+}
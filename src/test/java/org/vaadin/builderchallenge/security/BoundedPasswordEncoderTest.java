@@ -0,0 +1,130 @@
+package org.vaadin.builderchallenge.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    // Holds every password check until released
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch checking = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void passwordsAreCheckedByTheDelegate() {
+        encoder = new BoundedPasswordEncoder(new ReversingEncoder(), 2, 4, Duration.ofSeconds(10));
+
+        assertEquals("terces", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "terces"));
+        assertFalse(encoder.matches("secret", "secret"));
+        assertEquals(3, encoder.stats().completed());
+    }
+
+    @Test
+    void exceptionsOfTheDelegateArePassedOn() {
+        encoder = new BoundedPasswordEncoder(new ReversingEncoder(), 1, 1, Duration.ofSeconds(10));
+
+        var ex = assertThrows(IllegalArgumentException.class, () -> encoder.matches("secret", null));
+        assertEquals("Not encoded", ex.getMessage());
+    }
+
+    @Test
+    void checksBeyondTheQueueAreRejected() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, Duration.ofSeconds(10));
+        var running = callers.submit(() -> encoder.matches("secret", "terces"));
+        assertTrue(checking.await(10, TimeUnit.SECONDS));
+        var queued = callers.submit(() -> encoder.matches("secret", "terces"));
+        awaitQueued(1);
+
+        assertThrows(AuthenticationServiceException.class, () -> encoder.matches("secret", "terces"));
+        var stats = encoder.stats();
+        assertEquals(1, stats.rejected());
+        assertEquals(1, stats.active());
+        assertEquals(1, stats.queued());
+
+        release.countDown();
+        assertTrue(running.get(10, TimeUnit.SECONDS));
+        assertTrue(queued.get(10, TimeUnit.SECONDS));
+        assertEquals(2, encoder.stats().completed());
+    }
+
+    @Test
+    void checksThatWaitTooLongFail() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, Duration.ofMillis(50));
+
+        assertThrows(AuthenticationServiceException.class, () -> encoder.matches("secret", "terces"));
+        assertEquals(1, encoder.stats().timedOut());
+    }
+
+    @Test
+    void invalidLimitsAreRejected() {
+        var delegate = new ReversingEncoder();
+        assertThrows(IllegalArgumentException.class,
+                () -> new BoundedPasswordEncoder(delegate, 0, 1, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BoundedPasswordEncoder(delegate, 1, 0, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BoundedPasswordEncoder(delegate, 1, 1, Duration.ZERO));
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (encoder.stats().queued() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("Nothing was queued");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static class ReversingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return new StringBuilder(rawPassword).reverse().toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            if (encodedPassword == null) {
+                throw new IllegalArgumentException("Not encoded");
+            }
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+
+    private class BlockingEncoder extends ReversingEncoder {
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            checking.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return super.matches(rawPassword, encodedPassword);
+        }
+    }
+}
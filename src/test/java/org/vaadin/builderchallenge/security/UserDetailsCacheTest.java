@@ -0,0 +1,84 @@
+package org.vaadin.builderchallenge.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.vaadin.builderchallenge.data.service.UserChangedEvent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDetailsCacheTest {
+
+    private final UserDetailsCache cache = new UserDetailsCache(2, 300);
+
+    @Test
+    void cachedUsersAreCopiesWhoseCredentialsSurviveErasure() {
+        var alice = user("alice");
+        cache.putUserInCache(alice);
+        ((User) alice).eraseCredentials();
+
+        var cached = cache.getUserFromCache("alice");
+        assertEquals("{noop}alice-secret", cached.getPassword());
+        ((User) cached).eraseCredentials();
+        assertEquals("{noop}alice-secret", cache.getUserFromCache("alice").getPassword());
+    }
+
+    @Test
+    void hitsAndMissesAreCounted() {
+        assertNull(cache.getUserFromCache("alice"));
+        cache.putUserInCache(user("alice"));
+        cache.getUserFromCache("alice");
+        cache.getUserFromCache("alice");
+
+        var stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    void leastRecentlyUsedUserIsEvicted() {
+        cache.putUserInCache(user("alice"));
+        cache.putUserInCache(user("bob"));
+        cache.getUserFromCache("alice");
+        cache.putUserInCache(user("carol"));
+
+        assertNotNull(cache.getUserFromCache("alice"));
+        assertNull(cache.getUserFromCache("bob"));
+        assertNotNull(cache.getUserFromCache("carol"));
+    }
+
+    @Test
+    void expiredUsersAreRemoved() throws InterruptedException {
+        var expiring = new UserDetailsCache(2, 0);
+        expiring.putUserInCache(user("alice"));
+        Thread.sleep(1);
+
+        assertNull(expiring.getUserFromCache("alice"));
+        assertEquals(0, expiring.stats().size());
+    }
+
+    @Test
+    void changingAnyUserClearsTheCache() {
+        cache.putUserInCache(user("alice"));
+        cache.putUserInCache(user("bob"));
+
+        cache.onUserChanged(new UserChangedEvent(1L));
+
+        assertNull(cache.getUserFromCache("alice"));
+        assertNull(cache.getUserFromCache("bob"));
+    }
+
+    @Test
+    void removedUserIsLoadedAgain() {
+        cache.putUserInCache(user("alice"));
+
+        cache.removeUserFromCache("alice");
+
+        assertNull(cache.getUserFromCache("alice"));
+    }
+
+    private static UserDetails user(String username) {
+        return User.withUsername(username).password("{noop}" + username + "-secret").roles("USER").build();
+    }
+}